@@ -1,6 +1,7 @@
 package bg.sofia.uni.fmi.mjt.bookmarksmanager;
 
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.Bookmark;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.enrichment.EnrichmentQueue;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.GroupAlreadyExistsException;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.InvalidCredentialsException;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.NoSuchBookmarkException;
@@ -10,16 +11,28 @@ import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.UserAlreadyExistsExcepti
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.UserNotLoggedInException;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.finder.BookmarksFinder;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.linkcheck.LinkHealthCache;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.linkcheck.LinkProber;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.outerimport.ImportProgress;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.outerimport.NetscapeImporter;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage.CleanupReport;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage.CleanupScheduler;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage.ImportReport;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage.PersistenceScheduler;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage.UsersStorage;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer.HtmlTokenizer;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer.PageMetadataCache;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.user.User;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.channels.SocketChannel;
-import java.util.HashMap;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 //Here I use the Facade design pattern to separate storage from command handling
 
@@ -37,19 +50,65 @@ public class BookmarksManager implements BookmarksManagerAPI {
     private final Map<SocketChannel, User> loggedInUsers; //manages users' login sessions
     private final UsersStorage usersStorage;
     private final BookmarksFinder finder;
+    private final PersistenceScheduler persistence; //writes the changed users' data in groups
+    private final HtmlTokenizer tokenizer; //shared by all the commands that analyze pages
+    private final EnrichmentQueue enrichment; //null when add-to analyzes the page itself
+    private final LinkProber prober; //shared by the cleanups of all the users
+    private final CleanupScheduler cleanupScheduler; //null when cleanup probes the links itself
+    private final Map<String, ImportProgress> imports; //the last import of each user, by username
 
 
     public BookmarksManager() {
-        this.loggedInUsers = new HashMap<>();
+        this.loggedInUsers = new ConcurrentHashMap<>();
         this.usersStorage = new UsersStorage(REGISTERED_USERS_FILE);
         this.finder = new BookmarksFinder();
+        this.persistence = new PersistenceScheduler(usersStorage).start();
+        this.tokenizer = new HtmlTokenizer(new PageMetadataCache(Path.of(PAGES_CACHE_DIRECTORY)));
+        this.enrichment = new EnrichmentQueue(tokenizer);
+        LinkHealthCache linkHealth = new LinkHealthCache(LINK_HEALTH_FILE);
+        this.prober = new LinkProber(linkHealth);
+        this.cleanupScheduler = new CleanupScheduler(usersStorage, prober, this::bookmarksRemoved,
+                CLEANUP_STATE_FILE).start();
+        this.imports = new ConcurrentHashMap<>();
+        usersStorage.addEvictionListener(finder::invalidateUserCache);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            cleanupScheduler.close();
+            enrichment.close();
+            persistence.close();
+            prober.close();
+            linkHealth.close();
+        }, "persistence-shutdown"));
     }
 
     public BookmarksManager(Map<SocketChannel, User> loggedInUsers,
                             UsersStorage usersStorage, BookmarksFinder finder) {
+        this(loggedInUsers, usersStorage, finder, new PersistenceScheduler(usersStorage).start());
+    }
+
+    public BookmarksManager(Map<SocketChannel, User> loggedInUsers, UsersStorage usersStorage,
+                            BookmarksFinder finder, PersistenceScheduler persistence) {
+        this(loggedInUsers, usersStorage, finder, persistence, HtmlTokenizer.getDefault());
+    }
+
+    public BookmarksManager(Map<SocketChannel, User> loggedInUsers, UsersStorage usersStorage,
+                            BookmarksFinder finder, PersistenceScheduler persistence,
+                            HtmlTokenizer tokenizer) {
+        this(loggedInUsers, usersStorage, finder, persistence, tokenizer, null);
+    }
+
+    public BookmarksManager(Map<SocketChannel, User> loggedInUsers, UsersStorage usersStorage,
+                            BookmarksFinder finder, PersistenceScheduler persistence,
+                            HtmlTokenizer tokenizer, EnrichmentQueue enrichment) {
         this.loggedInUsers = loggedInUsers;
         this.usersStorage = usersStorage;
         this.finder = finder;
+        this.persistence = persistence;
+        this.tokenizer = tokenizer;
+        this.enrichment = enrichment;
+        this.prober = LinkProber.getDefault();
+        this.cleanupScheduler = null;
+        this.imports = new ConcurrentHashMap<>();
+        usersStorage.addEvictionListener(finder::invalidateUserCache);
     }
 
     //wrapper functions of the base ones- this is some kind of a declaration (interface)
@@ -71,6 +130,7 @@ public class BookmarksManager implements BookmarksManagerAPI {
             ExceptionsLogger.logClientException(e);
             return String.format("User with username %s already exists!", username);
         }
+        persistence.markDirty(usersStorage.getUser(username));
         return result;
     }
 
@@ -95,12 +155,20 @@ public class BookmarksManager implements BookmarksManagerAPI {
             return String.format("User with username %s has already logged in!", username);
         }
 
-        if (!usersStorage.getUsers().get(username).validatePassword(password)) {
+        User loggedInUser = usersStorage.getUser(username);
+        if (loggedInUser == null) {
+            throw new NoSuchUserException("Could not load the data of user " + username);
+        }
+        if (!loggedInUser.validatePassword(password)) {
             throw new InvalidCredentialsException("Incorrect password" +
                     " entered when logging!");
         }
-         User loggedInUser = usersStorage.getUsers().get(username);
-         loggedInUsers.put(clientChannel, loggedInUser);
+        //the session keeps the user's groups in memory until they disconnect
+        User sessionUser = usersStorage.openSession(username);
+        if (sessionUser == null) {
+            throw new NoSuchUserException("Could not load the data of user " + username);
+        }
+         loggedInUsers.put(clientChannel, sessionUser);
          return String.format("User with name %s has successfully logged in.", username);
     }
 
@@ -123,6 +191,8 @@ public class BookmarksManager implements BookmarksManagerAPI {
             User loggedInUser = loggedInUsers.get(clientChannel);
             loggedInUser.getStorage().createNewGroup(groupName);
             usersStorage.updateUser(loggedInUser.getUsername(), loggedInUser);
+            persistence.markDirty(loggedInUser.getStorage());
+            finder.groupCreated(loggedInUser.getUsername(), groupName);
             return String.format("Successful creation of bookmarks " +
                     "group %s for user %s", groupName, loggedInUser.getUsername());
         } catch (GroupAlreadyExistsException e) {
@@ -138,9 +208,11 @@ public class BookmarksManager implements BookmarksManagerAPI {
             return NOT_LOGGED_WARNING;
         }
         User loggedInUser = loggedInUsers.get(clientChannel);
+        Bookmark bookmark;
         try {
-            loggedInUser.getStorage().addNewBookmarkToGroup(Bookmark.of(url, groupName,
-                    isShortened), groupName);
+            bookmark = enrichment == null ? Bookmark.of(url, groupName, isShortened, tokenizer) :
+                    Bookmark.unenriched(url, groupName, isShortened);
+            loggedInUser.getStorage().addNewBookmarkToGroup(bookmark, groupName);
         } catch (NoSuchGroupException e) {
             ExceptionsLogger.logClientException(e);
             return INEXISTENT_GROUP_BOOKMARK;
@@ -152,7 +224,11 @@ public class BookmarksManager implements BookmarksManagerAPI {
             return INVALID_COMMAND_PARAMS;
         }
         usersStorage.updateUser(loggedInUser.getUsername(), loggedInUser);
-        invalidateFinder(loggedInUser.getUsername());
+        persistence.markDirty(loggedInUser.getStorage());
+        finder.bookmarkAdded(loggedInUser.getUsername(), bookmark);
+        if (enrichment != null) {
+            enrichInBackground(loggedInUser, bookmark, false);
+        }
         return String.format("Successful add of bookmark %s " +
                 "to group %s of user %s", url, groupName,
                 loggedInUser.getUsername());
@@ -164,8 +240,9 @@ public class BookmarksManager implements BookmarksManagerAPI {
             return NOT_LOGGED_WARNING;
         }
         User loggedInUser = loggedInUsers.get(clientChannel);
+        Bookmark removed;
         try {
-            loggedInUser.getStorage().removeBookmarkFromGroup(bookmarkTitle, groupName);
+            removed = loggedInUser.getStorage().removeBookmarkFromGroup(bookmarkTitle, groupName);
         } catch (NoSuchGroupException | NoSuchBookmarkException e)  {
             ExceptionsLogger.logClientException(e);
             return INEXISTENT_GROUP_BOOKMARK;
@@ -174,7 +251,8 @@ public class BookmarksManager implements BookmarksManagerAPI {
             return INVALID_COMMAND_PARAMS;
         }
             usersStorage.updateUser(loggedInUser.getUsername(), loggedInUser);
-            invalidateFinder(loggedInUser.getUsername());
+            persistence.markDirty(loggedInUser.getStorage());
+            finder.bookmarkRemoved(loggedInUser.getUsername(), removed);
 
         return String.format("Successful remove of bookmark %s " +
                 "from group %s of user %s", bookmarkTitle, groupName,
@@ -187,8 +265,10 @@ public class BookmarksManager implements BookmarksManagerAPI {
             return NOT_LOGGED_WARNING;
         }
         User loggedInUser = loggedInUsers.get(clientChannel);
-        loggedInUser.getStorage().cleanUp();
-        invalidateFinder(loggedInUser.getUsername());
+        if (cleanupScheduler != null) {
+            return reportBackgroundCleanUp(loggedInUser.getUsername());
+        }
+        bookmarksRemoved(loggedInUser, loggedInUser.getStorage().cleanUp(prober));
         return String.format("Successful removal of user's %s " +
                 "invalid bookmarks (if there were such)",
                 loggedInUser.getUsername());
@@ -244,18 +324,101 @@ public class BookmarksManager implements BookmarksManagerAPI {
             throw new UserNotLoggedInException("User with socket channel "
                     + clientChannel.toString() + "has not logged in!");
         }
-       return loggedInUsers.get(clientChannel).
-               getStorage().importBookmarksFromChrome();
+        User loggedInUser = loggedInUsers.get(clientChannel);
+        ImportProgress progress = new ImportProgress(); //polled with 'status' from the user's other sessions
+        imports.put(loggedInUser.getUsername(), progress);
+        ImportReport report = loggedInUser.getStorage().importBookmarksFromChrome(tokenizer, progress);
+        persistence.markDirty(loggedInUser.getStorage());
+        if (report == null) {
+            return null;
+        }
+        report.removed().forEach(bookmark -> finder.bookmarkRemoved(loggedInUser.getUsername(), bookmark));
+        report.imported().forEach(bookmark -> finder.bookmarkAdded(loggedInUser.getUsername(), bookmark));
+        return report.imported();
+    }
+
+    //the file is one of the imports directory, the clients can not have any other file of
+    //the server read; the bookmarks are stored a batch at a time as the file is read, each
+    //batch with one flush, and their pages are analyzed in the background; the exported titles are kept
+    @Override
+    public String importFromHtml(SocketChannel clientChannel, String fileName) {
+        if (!hasUserLoggedIn(clientChannel)) {
+            return NOT_LOGGED_WARNING;
+        }
+        User loggedInUser = loggedInUsers.get(clientChannel);
+        Path file;
+        try {
+            file = NetscapeImporter.resolveInDirectory(Path.of(IMPORTS_DIRECTORY), fileName);
+        } catch (IOException | IllegalArgumentException e) {
+            ExceptionsLogger.logClientException(e);
+            return String.format("Only the files in the server's imports directory can be imported, " +
+                    "%s is not one of them.", fileName);
+        }
+        int[] added = {0};
+        int read;
+        try {
+            read = NetscapeImporter.importBookmarks(file, NetscapeImporter.DEFAULT_BATCH_SIZE,
+                    batch -> {
+                        List<Bookmark> batchAdded = loggedInUser.getStorage().addBookmarks(batch);
+                        persistence.markDirty(loggedInUser.getStorage());
+                        for (Bookmark bookmark : batchAdded) {
+                            finder.bookmarkAdded(loggedInUser.getUsername(), bookmark);
+                            if (enrichment != null) {
+                                enrichInBackground(loggedInUser, bookmark, true);
+                            }
+                        }
+                        added[0] += batchAdded.size();
+                    });
+        } catch (IOException | IllegalArgumentException e) {
+            ExceptionsLogger.logClientException(e);
+            return String.format("Could not read the bookmarks file %s. " +
+                    "%d bookmarks had been imported before that.", fileName, added[0]);
+        }
+        return String.format("Imported %d of the %d bookmarks in %s (the ones whose title is taken " +
+                "in their group were skipped). %s", added[0], read, fileName, enrichment == null ?
+                "Their keywords are their tags." :
+                "Their keywords are extracted in the background, enter 'status' to follow them.");
+    }
+
+    @Override
+    public String enrichmentStatus(SocketChannel clientChannel) {
+        if (!hasUserLoggedIn(clientChannel)) {
+            return NOT_LOGGED_WARNING;
+        }
+        String username = loggedInUsers.get(clientChannel).getUsername();
+        ImportProgress lastImport = imports.get(username);
+        String importStatus = lastImport == null ? "" : ". Last Chrome import: " + lastImport;
+        if (enrichment == null) {
+            return "Bookmarks' titles and keywords are extracted while they are added" + importStatus + ".";
+        }
+        List<Bookmark> pending = enrichment.getPendingBookmarks(username);
+        return String.format("Bookmarks waiting for their title and keywords: %d of yours, %d in total " +
+                        "(enriched: %d, failed: %d)%s%s", pending.size(), enrichment.getPendingCount(),
+                enrichment.getEnrichedCount(), enrichment.getFailedCount(),
+                pending.stream().map(Bookmark::url).toList(), importStatus);
     }
 
     @Override
     public void disconnectUser(SocketChannel clientChannel) {
         if (loggedInUsers.containsKey(clientChannel)) {
             User disconnectedUser = loggedInUsers.get(clientChannel);
-            disconnectedUser.getStorage().updateGroupsFile();
+            persistence.markDirty(disconnectedUser.getStorage());
+            persistence.markDirty(disconnectedUser);
             loggedInUsers.remove(clientChannel);
+            usersStorage.closeSession(disconnectedUser.getUsername());
         }
-        usersStorage.saveUsers();
+    }
+
+    public EnrichmentQueue getEnrichment() {
+        return enrichment;
+    }
+
+    public LinkProber getLinkProber() {
+        return prober;
+    }
+
+    public PersistenceScheduler getPersistence() {
+        return persistence;
     }
 
     @Override
@@ -278,8 +441,49 @@ public class BookmarksManager implements BookmarksManagerAPI {
         return true;
     }
 
-    private void invalidateFinder(String username) {
-        finder.invalidateUserCache(username);
+    //the links are checked by the cleanup scheduler; a new pass over the user's links is
+    //started, unless one is still running, and the latest results are reported
+    private String reportBackgroundCleanUp(String username) {
+        CleanupReport report = cleanupScheduler.getReport(username);
+        if (report == null || report.isFinished()) {
+            cleanupScheduler.requestPriorityPass(username);
+        }
+        if (report == null) {
+            return String.format("The links of user %s are being checked in the background. " +
+                    "Enter 'cleanup' again to see the removed invalid bookmarks.", username);
+        }
+        return String.format("%s check of the links of user %s: %d of %d checked, " +
+                        "removed invalid bookmarks: %s%s", report.isFinished() ? "Last" : "Current",
+                username, report.checkedLinks(), report.totalLinks(),
+                report.removedBookmarks().stream().map(Bookmark::url).toList(),
+                report.isFinished() ? ". A new check has been started." : "");
     }
 
+    //one write of the storage for all the bookmarks removed together
+    private void bookmarksRemoved(User user, List<Bookmark> removed) {
+        persistence.markDirty(user.getStorage());
+        removed.forEach(bookmark -> finder.bookmarkRemoved(user.getUsername(), bookmark));
+    }
+
+    //the bookmark is swapped for the enriched one unless it has been removed meanwhile;
+    //the open session keeps the user in memory until its page is analyzed;
+    //an imported bookmark keeps its title and its tags are kept along with the page's keywords
+    private void enrichInBackground(User user, Bookmark bookmark, boolean isImported) {
+        String username = user.getUsername();
+        usersStorage.openSession(username);
+        enrichment.submit(username, bookmark, page -> {
+            Bookmark enriched = isImported ? withImportedData(bookmark, page) : page;
+            if (user.getStorage().replaceBookmark(bookmark.groupName(), bookmark, enriched)) {
+                persistence.markDirty(user.getStorage());
+                finder.bookmarkRemoved(username, bookmark);
+                finder.bookmarkAdded(username, enriched);
+            }
+        }, () -> usersStorage.closeSession(username));
+    }
+
+    private static Bookmark withImportedData(Bookmark imported, Bookmark page) {
+        Set<String> keywords = new LinkedHashSet<>(imported.keywords());
+        keywords.addAll(page.keywords());
+        return new Bookmark(imported.title(), imported.url(), keywords, imported.groupName());
+    }
 }
@@ -24,6 +24,30 @@ public interface BookmarksManagerAPI {
             File.separator + "bookmarksmanager" + File.separator + "server"
             + File.separator + "storage" + File.separator + "users" + File.separator + "registeredUsers";
 
+    String LINK_HEALTH_FILE = "src" + File.separator +
+            "bg" + File.separator + "sofia" + File.separator +
+            "uni" + File.separator + "fmi" + File.separator + "mjt" +
+            File.separator + "bookmarksmanager" + File.separator + "server"
+            + File.separator + "storage" + File.separator + "linkHealth";
+
+    String CLEANUP_STATE_FILE = "src" + File.separator +
+            "bg" + File.separator + "sofia" + File.separator +
+            "uni" + File.separator + "fmi" + File.separator + "mjt" +
+            File.separator + "bookmarksmanager" + File.separator + "server"
+            + File.separator + "storage" + File.separator + "cleanupState";
+
+    String PAGES_CACHE_DIRECTORY = "src" + File.separator +
+            "bg" + File.separator + "sofia" + File.separator +
+            "uni" + File.separator + "fmi" + File.separator + "mjt" +
+            File.separator + "bookmarksmanager" + File.separator + "server"
+            + File.separator + "storage" + File.separator + "pages";
+
+    String IMPORTS_DIRECTORY = "src" + File.separator +
+            "bg" + File.separator + "sofia" + File.separator +
+            "uni" + File.separator + "fmi" + File.separator + "mjt" +
+            File.separator + "bookmarksmanager" + File.separator + "server"
+            + File.separator + "storage" + File.separator + "imports";
+
     String register(SocketChannel clientChannel, String username, String password);
     String login(SocketChannel clientChannel, String username, String password);
     String createNewBookmarksGroup(SocketChannel clientChannel, String groupName);
@@ -31,10 +55,12 @@ public interface BookmarksManagerAPI {
     String removeBookmarkFromGroup(SocketChannel clientChannel, String groupName, String bookmarkTitle);
     String cleanUp(SocketChannel clientChannel);
     List<Bookmark> importFromChrome(SocketChannel clientChannel);
+    String importFromHtml(SocketChannel clientChannel, String fileName);
     List<Bookmark> listAll(SocketChannel clientChannel);
     List<Bookmark> listByGroup(SocketChannel clientChannel, String groupName);
     List<Bookmark> searchByTags(SocketChannel clientChannel, Set<String> keywords);
     List<Bookmark> searchByTitle(SocketChannel clientChannel, String title);
+    String enrichmentStatus(SocketChannel clientChannel);
     void disconnectUser(SocketChannel clientChannel);
     Map<SocketChannel, User> getLoggedInUsers();
 }
@@ -1,7 +1,9 @@
 package bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark;
 
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer.HtmlTokenizer;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer.PageAnalysis;
 
+import java.io.Serial;
 import java.io.Serializable;
 import java.util.Set;
 
@@ -9,8 +11,24 @@ import static bg.sofia.uni.fmi.mjt.bookmarksmanager.api.ShortenLinkAPIHandler.ge
 
 public record Bookmark (String title, String url,
                        Set<String> keywords, String groupName) implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 0L; //the one every record gets
 
     public static Bookmark of(String url, String groupName, boolean isShortened) {
+        return of(url, groupName, isShortened, HtmlTokenizer.getDefault());
+    }
+
+    //a page that could not be fetched leaves the bookmark as unenriched would store it
+    public static Bookmark of(String url, String groupName, boolean isShortened, HtmlTokenizer tokenizer) {
+       Bookmark bookmark = unenriched(url, groupName, isShortened);
+       PageAnalysis page = tokenizer.analyze(bookmark.url());
+       String title = page.title() == null || page.title().isBlank() ? bookmark.title() : page.title();
+       Set<String> keywords = page.keywords() == null ? bookmark.keywords() : page.keywords();
+       return new Bookmark(title, bookmark.url(), keywords, groupName);
+    }
+
+    //a bookmark stored before its page is analyzed- its url stands for its title
+    public static Bookmark unenriched(String url, String groupName, boolean isShortened) {
        if (url == null || url.isEmpty() || url.isBlank() ||
                groupName == null || groupName.isEmpty() ||
                groupName.isBlank()) {
@@ -25,8 +43,7 @@ public record Bookmark (String title, String url,
            throw new RuntimeException("Could not shorten" +
                    " link due to missing API key or a request perform error!");
        }
-       HtmlTokenizer tokenizer = new HtmlTokenizer();
-       return new Bookmark(tokenizer.getTitle(url), url, tokenizer.getKeywords(url), groupName);
+       return new Bookmark(url, url, Set.of(), groupName);
     }
 
     @Override
@@ -1,5 +1,6 @@
 package bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark;
 
+import java.io.Serial;
 import java.io.Serializable;
 import java.util.Iterator;
 import java.util.List;
@@ -9,6 +10,9 @@ import java.util.Set;
 
 
 public class BookmarksGroup implements Serializable {
+    //pinned: the groups are part of the users file of the first version
+    @Serial
+    private static final long serialVersionUID = -3292600822021388074L;
 
     private final String groupName;
     private final Map<String, Bookmark> bookmarks;
@@ -60,6 +64,16 @@ public class BookmarksGroup implements Serializable {
         }
         return bookmarks.containsKey(bookmarkTitle);
     }
+
+    public boolean contains(Bookmark bookmark) {
+        return bookmark != null && bookmark.title() != null &&
+                bookmark.equals(bookmarks.get(bookmark.title()));
+    }
+
+    public int size() {
+        return bookmarks.size();
+    }
+
     public String getGroupName() {
         return groupName;
     }
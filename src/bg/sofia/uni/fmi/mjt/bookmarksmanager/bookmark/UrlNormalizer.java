@@ -0,0 +1,56 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark;
+
+import java.net.URI;
+import java.util.Locale;
+
+//Brings the different spellings of one link to the same form, so that the caches
+//of the pages and of the links' health keep one entry per link: the scheme and
+//host are lowercased, the default port and the fragment dropped and an empty path
+//becomes "/". The path and the query are kept as they are, they may be case-sensitive.
+
+public final class UrlNormalizer {
+    private static final int DEFAULT_HTTP_PORT = 80;
+    private static final int DEFAULT_HTTPS_PORT = 443;
+
+    private UrlNormalizer() {
+    }
+
+    //urls that can not be parsed are only trimmed
+    public static String normalize(String url) {
+        if (url == null) {
+            throw new IllegalArgumentException("Url can not be null!");
+        }
+        String trimmed = url.trim();
+        URI uri;
+        try {
+            uri = URI.create(trimmed);
+        } catch (IllegalArgumentException e) {
+            return trimmed;
+        }
+        if (uri.getScheme() == null || uri.getHost() == null) {
+            return trimmed;
+        }
+
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        StringBuilder normalized = new StringBuilder(trimmed.length())
+                .append(scheme).append("://");
+        if (uri.getRawUserInfo() != null) {
+            normalized.append(uri.getRawUserInfo()).append('@');
+        }
+        normalized.append(uri.getHost().toLowerCase(Locale.ROOT));
+        if (uri.getPort() != -1 && !isDefaultPort(scheme, uri.getPort())) {
+            normalized.append(':').append(uri.getPort());
+        }
+        String path = uri.getRawPath();
+        normalized.append(path == null || path.isEmpty() ? "/" : path);
+        if (uri.getRawQuery() != null) {
+            normalized.append('?').append(uri.getRawQuery());
+        }
+        return normalized.toString();
+    }
+
+    private static boolean isDefaultPort(String scheme, int port) {
+        return scheme.equals("http") && port == DEFAULT_HTTP_PORT
+                || scheme.equals("https") && port == DEFAULT_HTTPS_PORT;
+    }
+}
@@ -2,10 +2,10 @@ package bg.sofia.uni.fmi.mjt.bookmarksmanager.client;
 
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.command.CommandTemplate;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.protocol.FrameCodec;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
 import java.util.Scanner;
 
@@ -16,9 +16,6 @@ public class Client {
 
     private static final int SERVER_PORT = 7777;
     private static final String SERVER_HOST = "localhost";
-    private static final int BUFFER_SIZE = 4096;
-
-    private static final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
 
     public static void main(String[] args) {
 
@@ -50,10 +47,7 @@ public class Client {
             return false;
         }
         System.out.println("Sending message <" + message + "> to the server...");
-        buffer.clear(); // switch to writing mode
-        buffer.put(message.getBytes()); // buffer fill
-        buffer.flip(); // switch to reading mode
-        socketChannel.write(buffer); // buffer drain
+        FrameCodec.writeFrame(socketChannel, message);
         getServerMessage(socketChannel);
         if (CommandTemplate.DISCONNECT.getCommandValue().equals(message)) {
             System.out.println("Quiting communication with server.");
@@ -64,18 +58,13 @@ public class Client {
     }
 
     private static void getServerMessage(SocketChannel socketChannel) throws IOException {
-
-        buffer.clear(); // switch to writing mode
-        int readBytes = socketChannel.read(buffer); // buffer fill
-        if (readBytes < 0) {
+        //the reply may come in many TCP segments- readFrame waits for all of them
+        String reply = FrameCodec.readFrame(socketChannel);
+        if (reply == null) {
             System.out.println("Server closed the connection.");
             socketChannel.close();
+            return;
         }
-        buffer.flip(); // switch to reading mode
-        byte[] byteArray = new byte[buffer.remaining()];
-
-        buffer.get(byteArray);
-        String reply = new String(byteArray, "UTF-8"); // buffer drain
         System.out.println("The server replied <" + reply + ">");
     }
 
@@ -93,8 +82,13 @@ public class Client {
         System.out.println("7. To list all bookmarks of a particular group, please, enter 'list --group-name <group-name>'.");
         System.out.println("8. To search for bookmarks via tags(keywords), please, enter 'search --tags <tag> [<tag> ...]'.");
         System.out.println("9. To search for bookmarks via title, please, enter 'search --title <title>'.");
-        System.out.println("10. For all invalid bookmarks' removal, please, enter 'cleanup'.");
+        System.out.println("10. For all invalid bookmarks' removal (done in the background) and " +
+                "its results, please, enter 'cleanup'.");
         System.out.println("11. To import all of your Google Chrome bookmarks, please, enter 'import-from-chrome'.");
+        System.out.println("12. To import the bookmarks exported by your browser as an HTML file " +
+                "put in the server's imports directory, please, enter 'import-from-html <file-name>'.");
+        System.out.println("13. To see which of your bookmarks still wait for their title and keywords " +
+                "and how far your Chrome import has got, please, enter 'status'.");
 
         System.out.println("To disconnect from the app, please enter 'disconnect'.");
     }
@@ -35,8 +35,15 @@ public class CommandExecutor {
     private static final String SEARCH_CMD = "search";
     private static final String CLEAN_UP_CMD = "cleanup";
     private static final String IMPORT_CMD = "import-from-chrome";
+    private static final String IMPORT_HTML_CMD = "import-from-html";
+    private static final String STATUS_CMD = "status";
     private static final String DISCONNECT_CMD = "disconnect";
 
+    //commands that wait on the network or rewrite files- the multi-reactor
+    //server runs them on its workers pool instead of on the selector thread
+    private static final Set<String> BLOCKING_COMMANDS = Set.of(ADD_CMD, REMOVE_CMD,
+            CLEAN_UP_CMD, IMPORT_CMD, IMPORT_HTML_CMD, DISCONNECT_CMD);
+
     private final BookmarksManager manager;
 
     public CommandExecutor() {
@@ -59,12 +66,18 @@ public class CommandExecutor {
             case SEARCH_CMD -> search(clientChannel, cmd.arguments());
             case CLEAN_UP_CMD -> cleanup(clientChannel, cmd.arguments());
             case IMPORT_CMD -> importFromChrome(clientChannel, cmd.arguments());
+            case IMPORT_HTML_CMD -> importFromHtml(clientChannel, cmd.arguments());
+            case STATUS_CMD -> status(clientChannel, cmd.arguments());
             case DISCONNECT_CMD -> disconnectClient(clientChannel);
 
             default -> UNKNOWN_COMMAND_MESSAGE;
         };
     }
 
+    public static boolean isBlocking(Command cmd) {
+        return cmd != null && BLOCKING_COMMANDS.contains(cmd.command());
+    }
+
     private String registerUser(SocketChannel clientChannel, String[] args) {
         if (args.length != GENERAL_ARGS_COUNT) {
             return  String.format(INVALID_ARGUMENTS_FORMAT_MESSAGE,
@@ -189,6 +202,30 @@ public class CommandExecutor {
                 stream().map(Bookmark::toString).toList();
     }
 
+    private String importFromHtml(SocketChannel clientChannel, String[] args) {
+        if (args.length != 1) {
+            return String.format(INVALID_ARGUMENTS_FORMAT_MESSAGE,
+                    CommandTemplate.IMPORT_HTML.getCommandValue(),
+                    IMPORT_HTML_CMD + Arrays.toString(args));
+        }
+        return manager.importFromHtml(clientChannel, args[0]);
+    }
+
+    private String status(SocketChannel clientChannel, String[] args) {
+        if (args.length != 0) {
+            return String.format(INVALID_ARGUMENTS_FORMAT_MESSAGE,
+                    CommandTemplate.STATUS.getCommandValue(),
+                    STATUS_CMD + Arrays.toString(args));
+        }
+        return manager.enrichmentStatus(clientChannel);
+    }
+
+    //called by the servers for a connection dropped without a disconnect command, so that
+    //its user is logged out and can be evicted once idle
+    public void connectionClosed(SocketChannel clientChannel) {
+        disconnectClient(clientChannel);
+    }
+
     private String disconnectClient(SocketChannel clientChannel) {
         if (clientChannel == null) {
             return "No such a connection to the server!";
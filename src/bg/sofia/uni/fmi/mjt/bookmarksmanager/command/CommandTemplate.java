@@ -12,6 +12,8 @@ public enum CommandTemplate {
         SEARCH_TITLE("search --title <title>"),
         CLEAN_UP("cleanup"),
         IMPORT("import-from-chrome"),
+        IMPORT_HTML("import-from-html <file-name>"),
+        STATUS("status"),
         DISCONNECT("disconnect"),
         HELP("?");
 
@@ -0,0 +1,131 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.enrichment;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.Bookmark;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer.HtmlTokenizer;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer.PageAnalysis;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+//Analyzes the pages of the bookmarks that were stored before their title and
+//keywords were known. add-to returns as soon as the bookmark is stored and a few
+//background workers fetch the pages, handing each enriched bookmark to its callback.
+
+public class EnrichmentQueue implements Closeable {
+    public static final int DEFAULT_WORKERS_COUNT = 4;
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    private final HtmlTokenizer tokenizer;
+    private final ExecutorService workers;
+    private final Map<String, Set<Bookmark>> pendingBookmarks; //by username
+    private final AtomicInteger pendingCount;
+    private final AtomicLong enrichedCount;
+    private final AtomicLong failedCount;
+
+    public EnrichmentQueue(HtmlTokenizer tokenizer) {
+        this(tokenizer, DEFAULT_WORKERS_COUNT);
+    }
+
+    public EnrichmentQueue(HtmlTokenizer tokenizer, int workersCount) {
+        if (tokenizer == null || workersCount <= 0) {
+            throw new IllegalArgumentException("Tokenizer must not be null and " +
+                    "workers count must be positive!");
+        }
+        this.tokenizer = tokenizer;
+        this.workers = Executors.newFixedThreadPool(workersCount, runnable -> {
+            Thread thread = new Thread(runnable, "bookmarks-enrichment");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pendingBookmarks = new ConcurrentHashMap<>();
+        this.pendingCount = new AtomicInteger();
+        this.enrichedCount = new AtomicLong();
+        this.failedCount = new AtomicLong();
+    }
+
+    //onEnriched receives the bookmark with the page's title and keywords, it is not
+    //called if the page could not be fetched; onFinished is called in both cases
+    public void submit(String username, Bookmark bookmark, Consumer<Bookmark> onEnriched,
+                       Runnable onFinished) {
+        pendingBookmarks.computeIfAbsent(username, name -> ConcurrentHashMap.newKeySet()).add(bookmark);
+        pendingCount.incrementAndGet();
+        try {
+            workers.execute(() -> enrich(username, bookmark, onEnriched, onFinished));
+        } catch (RejectedExecutionException e) {
+            ExceptionsLogger.logClientException(e);
+            failedCount.incrementAndGet();
+            finish(username, bookmark, onFinished);
+        }
+    }
+
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    public List<Bookmark> getPendingBookmarks(String username) {
+        Set<Bookmark> pending = pendingBookmarks.get(username);
+        return pending == null ? List.of() : List.copyOf(pending);
+    }
+
+    public long getEnrichedCount() {
+        return enrichedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    //the queued bookmarks are still enriched, for a limited time
+    @Override
+    public void close() {
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enrich(String username, Bookmark bookmark, Consumer<Bookmark> onEnriched,
+                        Runnable onFinished) {
+        try {
+            PageAnalysis page = tokenizer.analyze(bookmark.url());
+            if (page.keywords() == null) {
+                failedCount.incrementAndGet(); //the url stays the bookmark's title
+                return;
+            }
+            //a page without a title keeps the url as one
+            String title = page.title() == null || page.title().isBlank() ? bookmark.title() : page.title();
+            onEnriched.accept(new Bookmark(title, bookmark.url(), page.keywords(), bookmark.groupName()));
+            enrichedCount.incrementAndGet();
+        } catch (RuntimeException e) {
+            ExceptionsLogger.logClientException(e);
+            failedCount.incrementAndGet();
+        } finally {
+            finish(username, bookmark, onFinished);
+        }
+    }
+
+    private void finish(String username, Bookmark bookmark, Runnable onFinished) {
+        pendingBookmarks.computeIfPresent(username, (name, pending) -> {
+            pending.remove(bookmark);
+            return pending.isEmpty() ? null : pending;
+        });
+        pendingCount.decrementAndGet();
+        onFinished.run();
+    }
+}
@@ -0,0 +1,29 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.fetch;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+//A page as downloaded by PageFetcher: the body is kept unparsed, so every caller sharing
+//the download parses a document of its own. The location is the url after the redirects.
+
+public record FetchedPage(String url, int statusCode, String location, byte[] body, String charset,
+                          String etag, String lastModified) {
+    private static final int NOT_MODIFIED_STATUS_CODE = 304;
+    private static final int ERROR_STATUS_CODE = 400;
+
+    public boolean isNotModified() {
+        return statusCode == NOT_MODIFIED_STATUS_CODE;
+    }
+
+    public boolean isError() {
+        return statusCode >= ERROR_STATUS_CODE;
+    }
+
+    //the charset is the one of the response's headers, otherwise it is detected from the page itself
+    public Document parse() throws IOException {
+        return Jsoup.parse(new ByteArrayInputStream(body), charset, location);
+    }
+}
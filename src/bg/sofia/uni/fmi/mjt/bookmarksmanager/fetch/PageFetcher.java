@@ -0,0 +1,173 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.fetch;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.UrlNormalizer;
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+//Downloads the bookmarked pages for all the commands that analyze them. Concurrent
+//requests for the same page share one download: the fetches in flight are kept by the
+//page's normalized url until they complete. The downloads run on virtual threads, at
+//most maxConcurrentFetches at a time and at most maxFetchesPerHost against the same
+//host. Bodies above maxBodySize are truncated and a site that does not connect and send
+//the page within the timeout fails the fetch.
+
+public class PageFetcher implements Closeable {
+    public static final int DEFAULT_MAX_CONCURRENT_FETCHES = 16;
+    public static final int DEFAULT_MAX_FETCHES_PER_HOST = 2;
+    public static final int DEFAULT_MAX_BODY_SIZE = 2 * 1024 * 1024;
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+    private static final String KEY_SEPARATOR = "\n"; //cannot be part of a url or of a header
+
+    private final Map<String, CompletableFuture<FetchedPage>> inFlight;
+    private final RequestLimiter limiter;
+    private final int maxBodySize;
+    private final int timeoutMillis;
+    private final ExecutorService fetches;
+    private final LongAdder downloads;
+    private final LongAdder sharedFetches;
+
+    private static final class DefaultFetcherHolder {
+        private static final PageFetcher INSTANCE = new PageFetcher();
+    }
+
+    public PageFetcher() {
+        this(DEFAULT_MAX_CONCURRENT_FETCHES, DEFAULT_MAX_FETCHES_PER_HOST, DEFAULT_MAX_BODY_SIZE, DEFAULT_TIMEOUT);
+    }
+
+    public PageFetcher(int maxConcurrentFetches, int maxFetchesPerHost, int maxBodySize, Duration timeout) {
+        if (maxBodySize <= 0 || timeout == null || timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("Max body size and timeout must be positive!");
+        }
+        this.inFlight = new ConcurrentHashMap<>();
+        this.limiter = new RequestLimiter(maxConcurrentFetches, maxFetchesPerHost);
+        this.maxBodySize = maxBodySize;
+        this.timeoutMillis = (int) Math.min(timeout.toMillis(), Integer.MAX_VALUE);
+        this.fetches = Executors.newVirtualThreadPerTaskExecutor();
+        this.downloads = new LongAdder();
+        this.sharedFetches = new LongAdder();
+    }
+
+    //the fetcher shared by the tokenizers, created on first use
+    public static PageFetcher getDefault() {
+        return DefaultFetcherHolder.INSTANCE;
+    }
+
+    public FetchedPage fetch(String url) throws IOException {
+        return fetch(url, null, null);
+    }
+
+    //a conditional fetch, answered with 304 if the page has not changed since the validators
+    public FetchedPage fetch(String url, String etag, String lastModified) throws IOException {
+        try {
+            return fetchAsync(url, etag, lastModified).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Could not fetch " + url, e.getCause());
+        }
+    }
+
+    //malformed urls are rejected right away, the way Jsoup rejects them
+    public CompletableFuture<FetchedPage> fetchAsync(String url, String etag, String lastModified) {
+        String host = getHost(url);
+        //requests with other validators may be answered differently, so they are not shared
+        String key = UrlNormalizer.normalize(url) + KEY_SEPARATOR + Objects.toString(etag, "")
+                + KEY_SEPARATOR + Objects.toString(lastModified, "");
+
+        CompletableFuture<FetchedPage> fetch = new CompletableFuture<>();
+        CompletableFuture<FetchedPage> running = inFlight.putIfAbsent(key, fetch);
+        if (running != null) {
+            sharedFetches.increment();
+            return running;
+        }
+        try {
+            fetches.execute(() -> {
+                //removed before it completes, so a caller done with it starts a new download next time
+                try {
+                    FetchedPage page = download(url, host, etag, lastModified);
+                    inFlight.remove(key, fetch);
+                    fetch.complete(page);
+                } catch (IOException | RuntimeException e) {
+                    inFlight.remove(key, fetch);
+                    fetch.completeExceptionally(e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    inFlight.remove(key, fetch);
+                    fetch.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) { //the fetcher has been closed
+            inFlight.remove(key, fetch);
+            fetch.completeExceptionally(new IOException("The page fetcher is closed", e));
+        }
+        return fetch;
+    }
+
+    public long getDownloads() {
+        return downloads.sum();
+    }
+
+    public long getSharedFetches() {
+        return sharedFetches.sum();
+    }
+
+    @Override
+    public void close() {
+        fetches.shutdownNow();
+    }
+
+    private FetchedPage download(String url, String host, String etag, String lastModified)
+            throws IOException, InterruptedException {
+        limiter.acquire(host);
+        try {
+            Connection connection = Jsoup.connect(url)
+                    .ignoreHttpErrors(true)
+                    .maxBodySize(maxBodySize)
+                    .timeout(timeoutMillis);
+            if (etag != null) {
+                connection.header("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                connection.header("If-Modified-Since", lastModified);
+            }
+            Connection.Response response = connection.execute();
+            downloads.increment();
+            return new FetchedPage(url, response.statusCode(), response.url().toString(),
+                    response.bodyAsBytes(), response.charset(), response.header("ETag"),
+                    response.header("Last-Modified"));
+        } finally {
+            limiter.release(host);
+        }
+    }
+
+    private static String getHost(String url) {
+        if (url == null) {
+            throw new IllegalArgumentException("Url must not be null!");
+        }
+        String host;
+        try {
+            host = URI.create(url.strip()).getHost();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed URL: " + url, e);
+        }
+        if (host == null) {
+            throw new IllegalArgumentException("Malformed URL: " + url);
+        }
+        return host.toLowerCase();
+    }
+}
@@ -0,0 +1,70 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.fetch;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+//Bounds the requests sent to the bookmarked sites: at most maxConcurrentRequests run
+//at a time and at most maxRequestsPerHost against the same host, so that no site is
+//flooded. Meant for virtual threads, which are the ones left waiting for a slot.
+
+public class RequestLimiter {
+    private final int maxRequestsPerHost;
+    private final Semaphore requestPermits;
+    private final Map<String, Integer> activeRequestsByHost; //guarded by hostsLock
+    //a lock instead of a monitor, so that the waiting virtual threads do not pin their carriers
+    private final ReentrantLock hostsLock;
+    private final Condition hostSlotReleased;
+
+    public RequestLimiter(int maxConcurrentRequests, int maxRequestsPerHost) {
+        if (maxConcurrentRequests <= 0 || maxRequestsPerHost <= 0) {
+            throw new IllegalArgumentException("Requests limits must be positive!");
+        }
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.requestPermits = new Semaphore(maxConcurrentRequests);
+        this.activeRequestsByHost = new HashMap<>();
+        this.hostsLock = new ReentrantLock();
+        this.hostSlotReleased = hostsLock.newCondition();
+    }
+
+    //the host's slot is taken first, so the global permits are held only by running requests
+    public void acquire(String host) throws InterruptedException {
+        acquireHostSlot(host);
+        try {
+            requestPermits.acquire();
+        } catch (InterruptedException e) {
+            releaseHostSlot(host);
+            throw e;
+        }
+    }
+
+    public void release(String host) {
+        requestPermits.release();
+        releaseHostSlot(host);
+    }
+
+    private void acquireHostSlot(String host) throws InterruptedException {
+        hostsLock.lock();
+        try {
+            while (activeRequestsByHost.getOrDefault(host, 0) >= maxRequestsPerHost) {
+                hostSlotReleased.await();
+            }
+            activeRequestsByHost.merge(host, 1, Integer::sum);
+        } finally {
+            hostsLock.unlock();
+        }
+    }
+
+    private void releaseHostSlot(String host) {
+        hostsLock.lock();
+        try {
+            //hosts without running requests are dropped, so the map does not grow with every link ever checked
+            activeRequestsByHost.computeIfPresent(host, (name, count) -> count == 1 ? null : count - 1);
+            hostSlotReleased.signalAll();
+        } finally {
+            hostsLock.unlock();
+        }
+    }
+}
@@ -5,57 +5,105 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 
 public class BookmarksFinder implements BookmarksFinderAPI {
 
-   private final Map<String, List<Bookmark>> cachedBookmarks;
+   private final Map<String, List<Bookmark>> cachedBookmarks; //the lists last returned to the users
+   private final Map<String, UserBookmarks> userBookmarks; //patched with every change of the users' storages
+   private volatile boolean isConsistencyCheckEnabled;
 
     public BookmarksFinder() {
-        this.cachedBookmarks = new ConcurrentHashMap<>();
+        this(new ConcurrentHashMap<>());
     }
 
     public BookmarksFinder(Map<String, List<Bookmark>> cachedBookmarks) {
         this.cachedBookmarks = cachedBookmarks;
+        this.userBookmarks = new ConcurrentHashMap<>();
     }
 
     @Override
     public List<Bookmark> searchBookmarksByUser(String username, UsersStorage storage) {
-        if (!cachedBookmarks.containsKey(username)) {
-            List<Bookmark> updatedResult = updateUserBookmarksCache(username, storage);
-            cachedBookmarks.put(username, updatedResult);
-        }
-        return cachedBookmarks.get(username);
+        List<Bookmark> bookmarks = getUserBookmarks(username, storage).getBookmarks();
+        cachedBookmarks.put(username, bookmarks);
+        return bookmarks;
     }
 
     @Override
     public List<Bookmark> searchBookmarksByGroup(String groupName, String username, UsersStorage storage) {
-        return searchBookmarksByUser(username, storage).stream().
-                filter(bookmark->bookmark.groupName().equals(groupName)).toList();
+        return getUserBookmarks(username, storage).getGroup(groupName);
     }
 
     @Override
     public List<Bookmark> searchBookmarksByTags(String username, Set<String> keywords, UsersStorage storage) {
-        return searchBookmarksByUser(username, storage).stream().
-                filter(bookmark->bookmark.keywords().containsAll(keywords)).toList();
+        return getUserBookmarks(username, storage).searchByTags(keywords);
     }
 
     @Override
     public List<Bookmark> searchBookmarksByTitle(String username, String title, UsersStorage storage) {
-        return searchBookmarksByUser(username, storage).stream().
-                filter(bookmark->bookmark.title().toLowerCase().contains(title.toLowerCase())).toList();
+        return getUserBookmarks(username, storage).searchByTitle(title);
+    }
+
+    //the change events are sent after the storage has been changed
+    public void groupCreated(String username, String groupName) {
+        patch(username, bookmarks -> bookmarks.groupCreated(groupName));
+    }
+
+    public void bookmarkAdded(String username, Bookmark bookmark) {
+        patch(username, bookmarks -> bookmarks.added(bookmark));
+    }
+
+    public void bookmarkRemoved(String username, Bookmark bookmark) {
+        patch(username, bookmarks -> bookmarks.removed(bookmark));
     }
 
     public void invalidateUserCache(String username) {
         cachedBookmarks.remove(username);
+        userBookmarks.remove(username);
+    }
+
+    //in this mode every search compares the patched bookmarks of the user with
+    //the ones in the storage first; meant for tests as it rebuilds them each time
+    public void setConsistencyCheckEnabled(boolean isEnabled) {
+        this.isConsistencyCheckEnabled = isEnabled;
+    }
+
+    public void checkConsistency(String username, UsersStorage storage) {
+        UserBookmarks cached = userBookmarks.get(username);
+        if (cached != null && !cached.getContents().equals(UserBookmarks.of(storage.getUsers()
+                .get(username).getStorage()).getContents())) {
+            throw new IllegalStateException(String.format("The cached bookmarks of user %s " +
+                    "differ from the ones in the storage!", username));
+        }
     }
 
     public Map<String, List<Bookmark>> getCachedBookmarks() {
         return cachedBookmarks;
     }
 
-    private List<Bookmark> updateUserBookmarksCache(String username, UsersStorage storage) {
-        return storage.getUsers().get(username).getStorage().getGroups().values().stream()
-                .flatMap(group -> group.getBookmarks().stream()).toList();
+    private UserBookmarks getUserBookmarks(String username, UsersStorage storage) {
+        UserBookmarks bookmarks = userBookmarks.computeIfAbsent(username, name -> {
+            List<Bookmark> cached = cachedBookmarks.get(name);
+            return cached != null ? UserBookmarks.of(cached) :
+                    UserBookmarks.of(storage.getUsers().get(name).getStorage());
+        });
+        if (isConsistencyCheckEnabled) {
+            checkConsistency(username, storage);
+        }
+        return bookmarks;
+    }
+
+    private void patch(String username, Consumer<UserBookmarks> change) {
+        UserBookmarks bookmarks = userBookmarks.get(username);
+        if (bookmarks == null) {
+            List<Bookmark> cached = cachedBookmarks.get(username);
+            if (cached == null) {
+                return; //built from the storage, which already has the change, on the next search
+            }
+            bookmarks = userBookmarks.computeIfAbsent(username, name -> UserBookmarks.of(cached));
+        }
+        change.accept(bookmarks);
+        cachedBookmarks.remove(username);
     }
 }
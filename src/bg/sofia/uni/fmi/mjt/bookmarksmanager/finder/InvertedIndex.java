@@ -0,0 +1,113 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.finder;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.Bookmark;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+//Maps every term of a bookmark (a keyword, a part of the title...) to the posting
+//list of the bookmarks that have it. A query intersects the posting lists of its
+//terms, the smallest first, instead of checking every bookmark of the user.
+
+class InvertedIndex {
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private final Function<Bookmark, Set<String>> termsOf;
+    private final Map<String, Integer> idsByKey; //a bookmark is identified by its group and title
+    private final Map<Integer, Bookmark> bookmarksById;
+    private final Map<String, PostingList> postings;
+    private int nextId;
+
+    InvertedIndex(Function<Bookmark, Set<String>> termsOf) {
+        this.termsOf = termsOf;
+        this.idsByKey = new HashMap<>();
+        this.bookmarksById = new HashMap<>();
+        this.postings = new HashMap<>();
+    }
+
+    //a bookmark with the same group and title replaces the indexed one
+    synchronized void add(Bookmark bookmark) {
+        if (bookmark == null) {
+            return;
+        }
+        remove(bookmark);
+        int id = nextId++;
+        idsByKey.put(keyOf(bookmark), id);
+        bookmarksById.put(id, bookmark);
+        for (String term : termsOf.apply(bookmark)) {
+            postings.computeIfAbsent(term, t -> new PostingList()).add(id);
+        }
+    }
+
+    synchronized void remove(Bookmark bookmark) {
+        if (bookmark == null) {
+            return;
+        }
+        Integer id = idsByKey.remove(keyOf(bookmark));
+        if (id == null) {
+            return;
+        }
+        for (String term : termsOf.apply(bookmarksById.remove(id))) {
+            PostingList posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(id);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    //the bookmarks that have all the terms, in the order they were indexed
+    synchronized List<Bookmark> search(Collection<String> terms) {
+        if (terms.isEmpty()) {
+            return all();
+        }
+        List<PostingList> lists = new ArrayList<>();
+        for (String term : terms) {
+            PostingList posting = postings.get(term);
+            if (posting == null) {
+                return List.of();
+            }
+            lists.add(posting);
+        }
+        lists.sort(Comparator.comparingInt(PostingList::size));
+
+        int[] candidates = lists.getFirst().toArray();
+        int candidatesCount = candidates.length;
+        for (int i = 1; i < lists.size() && candidatesCount > 0; i++) {
+            PostingList posting = lists.get(i);
+            int kept = 0;
+            for (int j = 0; j < candidatesCount; j++) {
+                if (posting.contains(candidates[j])) {
+                    candidates[kept++] = candidates[j];
+                }
+            }
+            candidatesCount = kept;
+        }
+
+        List<Bookmark> result = new ArrayList<>(candidatesCount);
+        for (int i = 0; i < candidatesCount; i++) {
+            result.add(bookmarksById.get(candidates[i]));
+        }
+        return result;
+    }
+
+    synchronized List<Bookmark> all() {
+        return bookmarksById.keySet().stream().sorted().map(bookmarksById::get).toList();
+    }
+
+    synchronized int size() {
+        return bookmarksById.size();
+    }
+
+    private static String keyOf(Bookmark bookmark) {
+        return bookmark.groupName() + KEY_SEPARATOR + bookmark.title();
+    }
+}
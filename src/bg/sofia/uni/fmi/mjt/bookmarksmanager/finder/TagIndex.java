@@ -0,0 +1,67 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.finder;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.Bookmark;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer.HtmlTokenizer;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+//Inverted index of one user's bookmarks by their stemmed keywords, so that a tags
+//query intersects a few posting lists instead of scanning all the bookmarks.
+
+class TagIndex {
+    private final InvertedIndex index;
+
+    TagIndex() {
+        this.index = new InvertedIndex(bookmark -> normalize(bookmark.keywords()));
+    }
+
+    static TagIndex of(Collection<Bookmark> bookmarks) {
+        TagIndex tagIndex = new TagIndex();
+        bookmarks.forEach(tagIndex::add);
+        return tagIndex;
+    }
+
+    void add(Bookmark bookmark) {
+        index.add(bookmark);
+    }
+
+    void remove(Bookmark bookmark) {
+        index.remove(bookmark);
+    }
+
+    //the bookmarks that have all the keywords, in the order they were indexed
+    List<Bookmark> search(Set<String> keywords) {
+        if (keywords == null || keywords.isEmpty()) {
+            return index.all();
+        }
+        Set<String> stems = new HashSet<>();
+        for (String keyword : keywords) {
+            if (keyword == null) {
+                return List.of();
+            }
+            stems.add(HtmlTokenizer.normalizeKeyword(keyword));
+        }
+        return index.search(stems);
+    }
+
+    int size() {
+        return index.size();
+    }
+
+    private static Set<String> normalize(Set<String> keywords) {
+        if (keywords == null) {
+            return Set.of();
+        }
+        Set<String> normalized = new HashSet<>();
+        for (String keyword : keywords) {
+            String stem = keyword == null ? null : HtmlTokenizer.normalizeKeyword(keyword);
+            if (stem != null && !stem.isEmpty()) {
+                normalized.add(stem);
+            }
+        }
+        return normalized;
+    }
+}
@@ -0,0 +1,68 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.finder;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.Bookmark;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+//Trigram index of one user's bookmarks by their lowercased titles. A title that
+//contains the query contains all of the query's trigrams, so only the bookmarks in
+//the intersection of their posting lists are checked with contains().
+//Queries shorter than a trigram can not be narrowed down and are answered by a scan.
+
+class TitleIndex {
+    private static final int GRAM_LENGTH = 3;
+
+    private final InvertedIndex index;
+
+    TitleIndex() {
+        this.index = new InvertedIndex(bookmark -> trigrams(normalize(bookmark.title())));
+    }
+
+    static TitleIndex of(Collection<Bookmark> bookmarks) {
+        TitleIndex titleIndex = new TitleIndex();
+        bookmarks.forEach(titleIndex::add);
+        return titleIndex;
+    }
+
+    void add(Bookmark bookmark) {
+        index.add(bookmark);
+    }
+
+    void remove(Bookmark bookmark) {
+        index.remove(bookmark);
+    }
+
+    //the bookmarks whose titles contain the query ignoring case, in the order they were indexed
+    List<Bookmark> search(String query) {
+        String normalizedQuery = normalize(query);
+        if (normalizedQuery == null) {
+            return List.of();
+        }
+        List<Bookmark> candidates = normalizedQuery.length() < GRAM_LENGTH ?
+                index.all() : index.search(trigrams(normalizedQuery));
+        return candidates.stream().filter(bookmark -> bookmark.title() != null &&
+                normalize(bookmark.title()).contains(normalizedQuery)).toList();
+    }
+
+    int size() {
+        return index.size();
+    }
+
+    private static String normalize(String title) {
+        return title == null ? null : title.toLowerCase();
+    }
+
+    private static Set<String> trigrams(String text) {
+        if (text == null || text.length() < GRAM_LENGTH) {
+            return Set.of();
+        }
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,125 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.finder;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.Bookmark;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.BookmarksGroup;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage.BookmarksGroupStorage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//The cached bookmarks of one user, grouped as in the user's storage. The finder
+//patches it with every change of the storage instead of rebuilding it; the list of
+//all bookmarks and the search indexes are created on the first read that needs them.
+
+class UserBookmarks {
+    private final Map<String, Map<String, Bookmark>> groups; //group name -> title -> bookmark
+    private List<Bookmark> bookmarks; //null after a change until the next list
+    private TagIndex tagIndex;
+    private TitleIndex titleIndex;
+
+    UserBookmarks() {
+        this.groups = new LinkedHashMap<>();
+    }
+
+    static UserBookmarks of(Collection<Bookmark> bookmarks) {
+        UserBookmarks userBookmarks = new UserBookmarks();
+        bookmarks.forEach(userBookmarks::added);
+        return userBookmarks;
+    }
+
+    static UserBookmarks of(BookmarksGroupStorage storage) {
+        UserBookmarks userBookmarks = new UserBookmarks();
+        for (BookmarksGroup group : storage.getGroups().values()) {
+            userBookmarks.groupCreated(group.getGroupName());
+            group.getBookmarks().forEach(userBookmarks::added);
+        }
+        return userBookmarks;
+    }
+
+    synchronized void groupCreated(String groupName) {
+        if (groupName != null) {
+            groups.putIfAbsent(groupName, new LinkedHashMap<>());
+        }
+    }
+
+    //a bookmark with the same title in the same group replaces the cached one
+    synchronized void added(Bookmark bookmark) {
+        if (bookmark == null || bookmark.groupName() == null) {
+            return;
+        }
+        Bookmark replaced = groups.computeIfAbsent(bookmark.groupName(), name -> new LinkedHashMap<>())
+                .put(bookmark.title(), bookmark);
+        if (bookmark.equals(replaced)) {
+            return;
+        }
+        bookmarks = null;
+        if (tagIndex != null) {
+            tagIndex.add(bookmark);
+        }
+        if (titleIndex != null) {
+            titleIndex.add(bookmark);
+        }
+    }
+
+    synchronized void removed(Bookmark bookmark) {
+        if (bookmark == null) {
+            return;
+        }
+        Map<String, Bookmark> group = groups.get(bookmark.groupName());
+        if (group == null || group.remove(bookmark.title()) == null) {
+            return;
+        }
+        bookmarks = null;
+        if (tagIndex != null) {
+            tagIndex.remove(bookmark);
+        }
+        if (titleIndex != null) {
+            titleIndex.remove(bookmark);
+        }
+    }
+
+    synchronized List<Bookmark> getBookmarks() {
+        if (bookmarks == null) {
+            List<Bookmark> all = new ArrayList<>();
+            groups.values().forEach(group -> all.addAll(group.values()));
+            bookmarks = List.copyOf(all);
+        }
+        return bookmarks;
+    }
+
+    synchronized List<Bookmark> getGroup(String groupName) {
+        Map<String, Bookmark> group = groups.get(groupName);
+        return group == null ? List.of() : List.copyOf(group.values());
+    }
+
+    synchronized List<Bookmark> searchByTags(Set<String> keywords) {
+        if (tagIndex == null) {
+            tagIndex = TagIndex.of(getBookmarks());
+        }
+        return tagIndex.search(keywords);
+    }
+
+    synchronized List<Bookmark> searchByTitle(String title) {
+        if (titleIndex == null) {
+            titleIndex = TitleIndex.of(getBookmarks());
+        }
+        return titleIndex.search(title);
+    }
+
+    //the bookmarks of every non-empty group regardless of their order, for consistency checks
+    synchronized Map<String, Set<Bookmark>> getContents() {
+        Map<String, Set<Bookmark>> contents = new HashMap<>();
+        groups.forEach((name, group) -> {
+            if (!group.isEmpty()) {
+                contents.put(name, new HashSet<>(group.values()));
+            }
+        });
+        return contents;
+    }
+}
@@ -0,0 +1,11 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.linkcheck;
+
+//The result of a link's last probe; failuresCount is the number of probes in a row
+//that have found the link dead, it is reset by the first one finding it alive.
+
+public record LinkHealth(int statusCode, long checkedAtMillis, int failuresCount) {
+
+    public boolean isValid() {
+        return LinkProber.isValid(statusCode);
+    }
+}
@@ -0,0 +1,188 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.linkcheck;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.UrlNormalizer;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//The health of the links probed by any user, so that a link bookmarked by many of
+//them is probed once per ttl. A failed probe is trusted only for the much shorter
+//failureTtl, so a link that was down for a while is probed again soon. The entries
+//are kept in access order and the least recently used ones are evicted above
+//maxEntries; with a file the cache is saved on close and loaded back on start, so
+//a restart does not probe every link again.
+
+public class LinkHealthCache implements Closeable {
+    public static final Duration DEFAULT_TTL = Duration.ofHours(12);
+    public static final Duration DEFAULT_FAILURE_TTL = Duration.ofMinutes(30);
+    public static final int DEFAULT_MAX_ENTRIES = 100_000;
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final Gson GSON = new Gson();
+
+    private final String fileName; //null for a cache kept only in memory
+    private final long ttlMillis;
+    private final long failureTtlMillis;
+    private final int maxEntries;
+    private final Clock clock;
+    private final LinkedHashMap<String, LinkHealth> entries; //by normalized url, guarded by this
+    private long hits;
+    private long misses;
+    private boolean isDirty;
+
+    private static final class StoredLinkHealth {
+        private String url;
+        private int statusCode;
+        private long checkedAtMillis;
+        private int failuresCount;
+    }
+
+    public LinkHealthCache() {
+        this(null);
+    }
+
+    public LinkHealthCache(String fileName) {
+        this(fileName, DEFAULT_TTL, DEFAULT_FAILURE_TTL, DEFAULT_MAX_ENTRIES, Clock.systemUTC());
+    }
+
+    //the failures are trusted for the default failure ttl, or for ttl if it is shorter
+    public LinkHealthCache(String fileName, Duration ttl, int maxEntries, Clock clock) {
+        this(fileName, ttl, ttl == null || ttl.compareTo(DEFAULT_FAILURE_TTL) > 0 ? DEFAULT_FAILURE_TTL : ttl,
+                maxEntries, clock);
+    }
+
+    public LinkHealthCache(String fileName, Duration ttl, Duration failureTtl, int maxEntries, Clock clock) {
+        if (ttl == null || ttl.isNegative() || ttl.isZero() || failureTtl == null
+                || failureTtl.isNegative() || failureTtl.isZero() || maxEntries <= 0 || clock == null) {
+            throw new IllegalArgumentException("Ttls and max entries must be positive and " +
+                    "clock must not be null!");
+        }
+        this.fileName = fileName;
+        this.ttlMillis = ttl.toMillis();
+        this.failureTtlMillis = failureTtl.toMillis();
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LinkHealth> eldest) {
+                return size() > LinkHealthCache.this.maxEntries;
+            }
+        };
+        if (fileName != null && Files.exists(Path.of(fileName))) {
+            load();
+        }
+    }
+
+    //the link's health if it has been probed within its ttl, null otherwise
+    public synchronized LinkHealth get(String url) {
+        LinkHealth health = entries.get(UrlNormalizer.normalize(url));
+        if (health == null || isExpired(health)) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return health;
+    }
+
+    //the expired entries are kept until evicted, they still carry the failures in a row
+    public synchronized LinkHealth record(String url, int statusCode) {
+        String key = UrlNormalizer.normalize(url);
+        LinkHealth previous = entries.get(key);
+        int failuresCount = LinkProber.isValid(statusCode) ? 0
+                : (previous == null ? 0 : previous.failuresCount()) + 1;
+        LinkHealth health = new LinkHealth(statusCode, clock.millis(), failuresCount);
+        entries.put(key, health);
+        isDirty = true;
+        return health;
+    }
+
+    //the failed probes in a row of the link, expired or not; unlike get it is not a lookup
+    public synchronized int getFailuresCount(String url) {
+        LinkHealth health = entries.get(UrlNormalizer.normalize(url));
+        return health == null ? 0 : health.failuresCount();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    //writes the entries from the least to the most recently used, so that loading them
+    //in this order restores their recency as well
+    public synchronized void save() {
+        if (fileName == null || !isDirty) {
+            return;
+        }
+        List<StoredLinkHealth> stored = new ArrayList<>(entries.size());
+        for (Map.Entry<String, LinkHealth> entry : entries.entrySet()) {
+            StoredLinkHealth health = new StoredLinkHealth();
+            health.url = entry.getKey();
+            health.statusCode = entry.getValue().statusCode();
+            health.checkedAtMillis = entry.getValue().checkedAtMillis();
+            health.failuresCount = entry.getValue().failuresCount();
+            stored.add(health);
+        }
+
+        Path file = Path.of(fileName);
+        Path tmpFile = Path.of(fileName + TMP_SUFFIX);
+        try (BufferedWriter writer = Files.newBufferedWriter(tmpFile)) {
+            GSON.toJson(stored, writer);
+        } catch (IOException e) {
+            ExceptionsLogger.logClientException(e);
+            return;
+        }
+        try {
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            isDirty = false;
+        } catch (IOException e) {
+            ExceptionsLogger.logClientException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        save();
+    }
+
+    private boolean isExpired(LinkHealth health) {
+        long entryTtlMillis = health.isValid() ? ttlMillis : failureTtlMillis;
+        return clock.millis() - health.checkedAtMillis() >= entryTtlMillis;
+    }
+
+    private void load() {
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(fileName))) {
+            StoredLinkHealth[] stored = GSON.fromJson(reader, StoredLinkHealth[].class);
+            if (stored == null) {
+                return;
+            }
+            for (StoredLinkHealth health : stored) {
+                if (health != null && health.url != null) {
+                    entries.put(health.url, new LinkHealth(health.statusCode, health.checkedAtMillis,
+                            health.failuresCount));
+                }
+            }
+        } catch (IOException | JsonParseException e) {
+            ExceptionsLogger.logClientException(e); //a damaged cache is only a colder start
+        }
+    }
+}
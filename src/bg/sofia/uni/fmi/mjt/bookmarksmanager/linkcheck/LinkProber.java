@@ -0,0 +1,196 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.linkcheck;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.UrlNormalizer;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.fetch.RequestLimiter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+//Checks whether the bookmarked links are still alive. The probes run concurrently on
+//virtual threads through one long-lived client, at most maxConcurrentProbes at a time
+//and at most maxProbesPerHost against the same host, so that no site is flooded.
+//With a LinkHealthCache the links probed within its ttl are not probed again.
+
+public class LinkProber implements Closeable {
+    public static final int DEFAULT_MAX_CONCURRENT_PROBES = 32;
+    public static final int DEFAULT_MAX_PROBES_PER_HOST = 4;
+    public static final Duration DEFAULT_PROBE_TIMEOUT = Duration.ofSeconds(5);
+    public static final int FAILED_PROBE = -1; //the link could not be reached at all
+    private static final int ERROR_STATUS_CODE = 400;
+    private static final String RANGE_HEADER = "Range";
+    private static final String FIRST_BYTE_RANGE = "bytes=0-0";
+
+    private final HttpClient client;
+    private final Duration probeTimeout;
+    private final RequestLimiter limiter;
+    private final ExecutorService probes;
+    private final LinkHealthCache healthCache; //null when every link is probed
+    private volatile boolean isClosed;
+
+    private static final class DefaultProberHolder {
+        private static final LinkProber INSTANCE = new LinkProber();
+    }
+
+    public LinkProber() {
+        this(new LinkHealthCache());
+    }
+
+    public LinkProber(LinkHealthCache healthCache) {
+        this(DEFAULT_MAX_CONCURRENT_PROBES, DEFAULT_MAX_PROBES_PER_HOST, DEFAULT_PROBE_TIMEOUT, healthCache);
+    }
+
+    public LinkProber(int maxConcurrentProbes, int maxProbesPerHost, Duration probeTimeout) {
+        this(maxConcurrentProbes, maxProbesPerHost, probeTimeout, null);
+    }
+
+    public LinkProber(int maxConcurrentProbes, int maxProbesPerHost, Duration probeTimeout,
+                      LinkHealthCache healthCache) {
+        if (maxConcurrentProbes <= 0 || maxProbesPerHost <= 0 || probeTimeout == null
+                || probeTimeout.isNegative() || probeTimeout.isZero()) {
+            throw new IllegalArgumentException("Probes limits and timeout must be positive!");
+        }
+        this.client = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(probeTimeout)
+                .build();
+        this.probeTimeout = probeTimeout;
+        this.limiter = new RequestLimiter(maxConcurrentProbes, maxProbesPerHost);
+        this.probes = Executors.newVirtualThreadPerTaskExecutor();
+        this.healthCache = healthCache;
+    }
+
+    //the prober shared by the storages, with a cache kept in memory; created on first use
+    public static LinkProber getDefault() {
+        return DefaultProberHolder.INSTANCE;
+    }
+
+    public static boolean isValid(int statusCode) {
+        return statusCode != FAILED_PROBE && statusCode < ERROR_STATUS_CODE;
+    }
+
+    //completes with the link's status code, or FAILED_PROBE if it could not be reached
+    public CompletableFuture<Integer> probe(String url) {
+        if (url == null) {
+            return CompletableFuture.completedFuture(FAILED_PROBE);
+        }
+        if (healthCache == null) {
+            return CompletableFuture.supplyAsync(() -> probeWithinLimits(url), probes);
+        }
+        LinkHealth health = healthCache.get(url);
+        if (health != null) {
+            return CompletableFuture.completedFuture(health.statusCode());
+        }
+        return CompletableFuture.supplyAsync(() -> probeAndRecord(url), probes);
+    }
+
+    //probes the spellings of one link once and waits for all of them; the result keeps their order
+    public Map<String, Integer> probeAll(Collection<String> urls) {
+        Map<String, CompletableFuture<Integer>> pendingByLink = new HashMap<>();
+        Map<String, CompletableFuture<Integer>> pending = new LinkedHashMap<>();
+        for (String url : urls) {
+            pending.put(url, pendingByLink.computeIfAbsent(normalize(url), link -> probe(url)));
+        }
+        Map<String, Integer> statusCodes = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<Integer>> entry : pending.entrySet()) {
+            try {
+                statusCodes.put(entry.getKey(), entry.getValue().join());
+            } catch (CompletionException e) {
+                ExceptionsLogger.logClientException(e);
+                statusCodes.put(entry.getKey(), FAILED_PROBE);
+            }
+        }
+        return statusCodes;
+    }
+
+    public LinkHealthCache getHealthCache() {
+        return healthCache;
+    }
+
+    @Override
+    public void close() {
+        isClosed = true;
+        probes.shutdownNow();
+        client.shutdownNow();
+    }
+
+    private static String normalize(String url) {
+        return url == null ? "" : UrlNormalizer.normalize(url);
+    }
+
+    //a probe cut off by an interrupt or by close() says nothing about the link, so it
+    //is not recorded and does not add to the link's failures
+    private int probeAndRecord(String url) {
+        int statusCode = probeWithinLimits(url);
+        if (isClosed || Thread.currentThread().isInterrupted()) {
+            return statusCode;
+        }
+        return healthCache.record(url, statusCode).statusCode();
+    }
+
+    private int probeWithinLimits(String url) {
+        URI uri;
+        try {
+            uri = URI.create(url.trim());
+        } catch (IllegalArgumentException e) {
+            ExceptionsLogger.logClientException(e);
+            return FAILED_PROBE;
+        }
+        if (uri.getHost() == null) {
+            return FAILED_PROBE;
+        }
+
+        String host = uri.getHost().toLowerCase();
+        try {
+            limiter.acquire(host);
+            try {
+                return probeHeadFirst(uri);
+            } finally {
+                limiter.release(host);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return FAILED_PROBE;
+        }
+    }
+
+    //some servers do not answer HEAD requests properly, so a link is reported dead
+    //only if a GET of its first byte fails as well; unreachable hosts are not tried twice
+    private int probeHeadFirst(URI uri) throws InterruptedException {
+        int statusCode = send(HttpRequest.newBuilder(uri)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .timeout(probeTimeout)
+                .build());
+        if (statusCode == FAILED_PROBE || statusCode < ERROR_STATUS_CODE) {
+            return statusCode;
+        }
+        return send(HttpRequest.newBuilder(uri)
+                .GET()
+                .header(RANGE_HEADER, FIRST_BYTE_RANGE)
+                .timeout(probeTimeout)
+                .build());
+    }
+
+    private int send(HttpRequest request) throws InterruptedException {
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException | IllegalArgumentException e) {
+            ExceptionsLogger.logClientException(e);
+            return FAILED_PROBE;
+        }
+    }
+}
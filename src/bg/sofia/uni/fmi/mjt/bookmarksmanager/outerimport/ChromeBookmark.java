@@ -0,0 +1,21 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.outerimport;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+//A bookmark as read from Chrome's Bookmarks file, before its page is analyzed;
+//groupName is the root (bookmark_bar, other, synced) it has been found under.
+//Chrome keeps its dates as strings of microseconds, they are only compared.
+
+public record ChromeBookmark(String groupName, String title, String url, String guid,
+                             String dateAdded, String dateModified) implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 0L;
+
+    private static final String KEY_SEPARATOR = "\n";
+
+    //the guid names a bookmark across its edits; without one it is named by its place and url
+    public String key() {
+        return guid != null ? guid : groupName + KEY_SEPARATOR + url;
+    }
+}
@@ -0,0 +1,118 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.outerimport;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
+
+//Reads Chrome's Bookmarks file as a stream: every bookmark is handed over as soon as
+//its node is read, so only the path to the current node is held in memory, however
+//large the synced profile is. The roots with children are reported as groups, the
+//bookmarks of their folders are flattened into them.
+
+public class ChromeBookmarksReader {
+    private static final String ROOTS_FIELD = "roots";
+    private static final String CHILDREN_FIELD = "children";
+    private static final String TYPE_FIELD = "type";
+    private static final String NAME_FIELD = "name";
+    private static final String URL_FIELD = "url";
+    private static final String GUID_FIELD = "guid";
+    private static final String DATE_ADDED_FIELD = "date_added";
+    private static final String DATE_MODIFIED_FIELD = "date_modified";
+    private static final String URL_TYPE = "url";
+
+    private final JsonReader reader;
+    private final Consumer<String> onGroup;
+    private final Consumer<ChromeBookmark> onBookmark;
+
+    private ChromeBookmarksReader(Reader reader, Consumer<String> onGroup, Consumer<ChromeBookmark> onBookmark) {
+        this.reader = new JsonReader(reader);
+        this.onGroup = onGroup;
+        this.onBookmark = onBookmark;
+    }
+
+    //malformed files end with an IOException, files of an unexpected shape with an IllegalStateException
+    public static void read(Reader reader, Consumer<String> onGroup, Consumer<ChromeBookmark> onBookmark)
+            throws IOException {
+        if (reader == null || onGroup == null || onBookmark == null) {
+            throw new IllegalArgumentException("Reader and consumers must not be null!");
+        }
+        new ChromeBookmarksReader(reader, onGroup, onBookmark).readFile();
+    }
+
+    private void readFile() throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (ROOTS_FIELD.equals(reader.nextName())) {
+                readRoots();
+            } else {
+                reader.skipValue(); //checksum, version, sync metadata
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readRoots() throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String groupName = reader.nextName();
+            if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                readNode(groupName, true);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    //the fields of a node may come in any order, so a folder's children are read as they
+    //come and a bookmark is reported once its whole node has been read
+    private void readNode(String groupName, boolean isRoot) throws IOException {
+        String type = null;
+        String name = null;
+        String url = null;
+        String guid = null;
+        String dateAdded = null;
+        String dateModified = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case CHILDREN_FIELD -> {
+                    if (isRoot) {
+                        onGroup.accept(groupName);
+                    }
+                    readChildren(groupName);
+                }
+                case TYPE_FIELD -> type = nextString();
+                case NAME_FIELD -> name = nextString();
+                case URL_FIELD -> url = nextString();
+                case GUID_FIELD -> guid = nextString();
+                case DATE_ADDED_FIELD -> dateAdded = nextString();
+                case DATE_MODIFIED_FIELD -> dateModified = nextString();
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (!isRoot && URL_TYPE.equals(type) && url != null) {
+            onBookmark.accept(new ChromeBookmark(groupName, name, url, guid, dateAdded, dateModified));
+        }
+    }
+
+    private void readChildren(String groupName) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            readNode(groupName, false);
+        }
+        reader.endArray();
+    }
+
+    private String nextString() throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+}
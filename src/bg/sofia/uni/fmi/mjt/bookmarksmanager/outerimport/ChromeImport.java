@@ -0,0 +1,14 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.outerimport;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.Bookmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//The changes an import has found since the previous one: the bookmarks to add, with their
+//pages analyzed, and the changed ones among them mapped to the previous versions they replace.
+
+public record ChromeImport(Set<String> groupNames, List<Bookmark> imported, Map<Bookmark, ChromeBookmark> replaced,
+                           ChromeImportState state) {
+}
@@ -0,0 +1,19 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.outerimport;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Map;
+
+//What the last import has seen of Chrome's Bookmarks file: the file's checksum and
+//every bookmark by its key, as it was then. It is kept with the groups the bookmarks
+//were imported into, so that only the new and changed ones are imported again.
+
+public record ChromeImportState(String checksum, Map<String, ChromeBookmark> bookmarks)
+        implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 0L;
+
+    public static ChromeImportState empty() {
+        return new ChromeImportState(null, Map.of());
+    }
+}
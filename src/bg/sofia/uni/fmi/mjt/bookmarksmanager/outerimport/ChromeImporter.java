@@ -4,17 +4,33 @@ import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.Bookmark;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.BookmarksGroup;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer.HtmlTokenizer;
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 
 import java.io.FileReader;
+import java.io.FilterReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+
+//Imports the bookmarks of the local Chrome profile. The bookmarks are collected
+//while the file is streamed and their pages are analyzed after that, concurrently,
+//each page once. Given the state of the previous import, only the bookmarks added
+//or changed since then are analyzed, and none if the file's checksum is the same.
 
 public class ChromeImporter {
+    public static final int DEFAULT_CONCURRENCY = 8;
 
     private static final String WINDOWS_BOOKMARKS_PATH =  "\\AppData\\" +
             "Local\\Google\\Chrome\\User Data\\Profile 9\\Bookmarks";
@@ -23,70 +39,124 @@ public class ChromeImporter {
     private static final String MACOS_BOOKMARKS_PATH =  "/Library/Application" +
             " Support/Google/Chrome/Bookmarks";
 
-    private static final String ROOT_GROUP_FIELD = "roots";
-    private static final String URL_CHROME_FIELD = "url";
-    private static final String FOLDER_CHROME_FIELD = "folder";
-    private static final String BOOKMARK_NAME_CHROME_FIELD = "name";
-    private static final String BOOKMARK_TYPE_CHROME_FIELD = "type";
-    private static final String BOOKMARKS_LIST_FIELD = "children";
-
-    private static final Gson gson = new Gson();
-    private static final HtmlTokenizer tokenizer = new HtmlTokenizer();
+    private record ChromeFile(String checksum, Set<String> groupNames, List<ChromeBookmark> bookmarks) {
+    }
 
     public static Map<String, BookmarksGroup> importChromeGroups() {
+        return importChromeGroups(HtmlTokenizer.getDefault());
+    }
+
+    public static Map<String, BookmarksGroup> importChromeGroups(HtmlTokenizer tokenizer) {
+        return importChromeGroups(tokenizer, DEFAULT_CONCURRENCY, new ImportProgress());
+    }
+
+    //all the bookmarks of the file, as if it had never been imported
+    public static Map<String, BookmarksGroup> importChromeGroups(HtmlTokenizer tokenizer, int concurrency,
+                                                                 ImportProgress progress) {
+        ChromeImport chromeImport = importChanges(tokenizer, concurrency, progress, ChromeImportState.empty(),
+                chromeBookmark -> false);
+        if (chromeImport == null) {
+            return null;
+        }
         Map<String, BookmarksGroup> chromeGroups = new HashMap<>();
+        for (String groupName : chromeImport.groupNames()) {
+            chromeGroups.put(groupName, new BookmarksGroup(groupName, new HashMap<>()));
+        }
+        chromeImport.imported().forEach(bookmark -> chromeGroups.get(bookmark.groupName()).addNewBookmark(bookmark));
+        return chromeGroups;
+    }
+
+    //at most concurrency pages are analyzed at a time; the progress is updated as they are.
+    //The bookmarks new to the previous state are skipped if isStored already has them,
+    //the ones removed from Chrome are only forgotten; null if the file cannot be read
+    public static ChromeImport importChanges(HtmlTokenizer tokenizer, int concurrency, ImportProgress progress,
+                                             ChromeImportState previous, Predicate<ChromeBookmark> isStored) {
+        if (tokenizer == null || concurrency <= 0 || progress == null || previous == null || isStored == null) {
+            throw new IllegalArgumentException("Tokenizer, progress, previous state and predicate " +
+                    "must not be null and concurrency must be positive!");
+        }
         try {
-            String chromeFile = findChromeBookmarksPath();
+            ChromeFile chromeFile = readChromeFile();
             if (chromeFile == null) {
-                System.err.println("ChromeFile is null");
                 return null;
             }
-            FileReader reader = new FileReader(chromeFile);
-            JsonObject root = gson.fromJson(reader, JsonObject.class);
-            JsonObject roots = root.getAsJsonObject(ROOT_GROUP_FIELD);
-            for (Map.Entry<String, JsonElement> entry : roots.entrySet()) {
-                String groupName = entry.getKey();
-                BookmarksGroup currentGroup = new BookmarksGroup(groupName,
-                        new HashMap<>());
-                JsonObject groupNode = entry.getValue().getAsJsonObject();
-                JsonArray children = groupNode.getAsJsonArray(BOOKMARKS_LIST_FIELD);
-                System.err.println("groupNode:  " + groupNode);
-                System.err.println("children:  " + children);
-
-                if (children != null) {
-                    extractBookmarks(children, currentGroup);
-                    chromeGroups.putIfAbsent(groupName, currentGroup);
+            if (chromeFile.checksum().equals(previous.checksum())) {
+                return new ChromeImport(chromeFile.groupNames(), List.of(), Map.of(), previous);
+            }
+            Map<String, ChromeBookmark> current = new LinkedHashMap<>();
+            List<ChromeBookmark> toImport = new ArrayList<>();
+            Map<ChromeBookmark, ChromeBookmark> previousVersions = new HashMap<>();
+            for (ChromeBookmark chromeBookmark : chromeFile.bookmarks()) {
+                current.put(chromeBookmark.key(), chromeBookmark);
+                ChromeBookmark previousVersion = previous.bookmarks().get(chromeBookmark.key());
+                if (previousVersion == null && !isStored.test(chromeBookmark)) {
+                    toImport.add(chromeBookmark);
+                } else if (previousVersion != null && !previousVersion.equals(chromeBookmark)) {
+                    toImport.add(chromeBookmark);
+                    previousVersions.put(chromeBookmark, previousVersion);
+                }
+            }
+            Map<String, Set<String>> keywordsByUrl = analyzePages(toImport, tokenizer, concurrency, progress);
+            List<Bookmark> imported = new ArrayList<>();
+            Map<Bookmark, ChromeBookmark> replaced = new LinkedHashMap<>();
+            for (ChromeBookmark chromeBookmark : toImport) {
+                Bookmark bookmark = new Bookmark(chromeBookmark.title(), chromeBookmark.url(),
+                        keywordsByUrl.get(chromeBookmark.url()), chromeBookmark.groupName());
+                imported.add(bookmark);
+                if (previousVersions.containsKey(chromeBookmark)) {
+                    replaced.put(bookmark, previousVersions.get(chromeBookmark));
                 }
             }
-        } catch (IOException e) {
+            return new ChromeImport(chromeFile.groupNames(), List.copyOf(imported), replaced,
+                    new ChromeImportState(chromeFile.checksum(), current));
+        } finally {
+            progress.finish();
+        }
+    }
+
+    private static ChromeFile readChromeFile() {
+        String chromeFile = findChromeBookmarksPath();
+        if (chromeFile == null) {
+            return null;
+        }
+        Set<String> groupNames = new LinkedHashSet<>();
+        List<ChromeBookmark> chromeBookmarks = new ArrayList<>();
+        try (ChecksumReader reader = new ChecksumReader(new FileReader(chromeFile))) {
+            ChromeBookmarksReader.read(reader, groupNames::add, chromeBookmarks::add);
+            return new ChromeFile(reader.getChecksum(), groupNames, chromeBookmarks);
+        } catch (IOException | IllegalStateException e) {
             ExceptionsLogger.logClientException(e);
-            System.err.println("Exc when chromeFile opening:  " + e.getMessage());
             return null;
         }
-        return chromeGroups;
     }
 
-    private static void extractBookmarks(JsonArray children, BookmarksGroup chromeGroup) {
-        for (JsonElement element : children) {
-            JsonObject bookmarkNode = element.getAsJsonObject();
-            String type = bookmarkNode.get(BOOKMARK_TYPE_CHROME_FIELD).getAsString();
-
-            if (URL_CHROME_FIELD.equals(type)) {
-                String title = bookmarkNode.get(BOOKMARK_NAME_CHROME_FIELD).getAsString();
-                String url = bookmarkNode.get(URL_CHROME_FIELD).getAsString();
-                chromeGroup.addNewBookmark(new Bookmark(title, url, tokenizer.getKeywords(url),
-                        chromeGroup.getGroupName()));
-
-                System.err.println("Title: " + title);
-                System.err.println("Url: " + url);
-            } else if (FOLDER_CHROME_FIELD.equals(type)) {
-                JsonArray subChildren = bookmarkNode.getAsJsonArray(BOOKMARKS_LIST_FIELD);
-                System.err.println("Subchildren: " + subChildren);
-                if (subChildren != null) {
-                    extractBookmarks(subChildren, chromeGroup);
-                }
+    //a page bookmarked in several folders is analyzed once; a page that cannot be
+    //analyzed leaves its bookmark without keywords, the import goes on
+    private static Map<String, Set<String>> analyzePages(List<ChromeBookmark> chromeBookmarks,
+                                                         HtmlTokenizer tokenizer, int concurrency,
+                                                         ImportProgress progress) {
+        Set<String> urls = new LinkedHashSet<>();
+        chromeBookmarks.forEach(chromeBookmark -> urls.add(chromeBookmark.url()));
+        progress.start(urls.size());
+
+        Map<String, CompletableFuture<Set<String>>> analyses = new HashMap<>();
+        try (ExecutorService workers = Executors.newFixedThreadPool(concurrency)) {
+            for (String url : urls) {
+                analyses.put(url, CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return tokenizer.getKeywords(url);
+                    } catch (RuntimeException e) {
+                        ExceptionsLogger.logClientException(e);
+                        return Set.of();
+                    } finally {
+                        progress.pageAnalyzed();
+                    }
+                }, workers));
             }
-        }
+        } //closing the workers waits for all the analyses
+        Map<String, Set<String>> keywordsByUrl = new HashMap<>();
+        analyses.forEach((url, analysis) -> keywordsByUrl.put(url, analysis.join()));
+        return keywordsByUrl;
     }
 
     private static String findChromeBookmarksPath() {
@@ -94,7 +164,6 @@ public class ChromeImporter {
         String userHome = System.getProperty("user.home");
 
         if (osName.contains("windows")) {
-            System.err.println("Os is Windows.");
             return userHome + WINDOWS_BOOKMARKS_PATH;
         } else if (osName.contains("linux") || osName.contains("unix")) {  // Linux
             return userHome + LINUX_BOOKMARKS_PATH;
@@ -106,5 +175,44 @@ public class ChromeImporter {
         return null;
     }
 
-}
+    //the file is hashed while it is parsed, so that it is read once
+    private static final class ChecksumReader extends FilterReader {
+        private final MessageDigest digest;
+
+        private ChecksumReader(Reader in) {
+            super(in);
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not supported", e); //every JVM must support it
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if (c != -1) {
+                update((char) c);
+            }
+            return c;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            for (int i = 0; i < read; i++) {
+                update(buffer[offset + i]);
+            }
+            return read;
+        }
 
+        private void update(char c) {
+            digest.update((byte) (c >> Byte.SIZE));
+            digest.update((byte) c);
+        }
+
+        private String getChecksum() {
+            return HexFormat.of().formatHex(digest.digest());
+        }
+    }
+}
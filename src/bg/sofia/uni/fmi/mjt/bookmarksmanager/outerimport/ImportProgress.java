@@ -0,0 +1,46 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.outerimport;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+//How far an import has got: the pages of the imported bookmarks are analyzed
+//concurrently, so it is updated by the importer's workers and read by 'status'.
+
+public class ImportProgress {
+    private volatile int totalPages;
+    private final AtomicInteger analyzedPages;
+    private volatile boolean isFinished;
+
+    public ImportProgress() {
+        this.analyzedPages = new AtomicInteger();
+    }
+
+    void start(int totalPages) {
+        this.totalPages = totalPages;
+    }
+
+    void pageAnalyzed() {
+        analyzedPages.incrementAndGet();
+    }
+
+    void finish() {
+        isFinished = true;
+    }
+
+    public int getTotalPages() {
+        return totalPages;
+    }
+
+    public int getAnalyzedPages() {
+        return analyzedPages.get();
+    }
+
+    public boolean isFinished() {
+        return isFinished;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d of %d pages analyzed%s", getAnalyzedPages(), totalPages,
+                isFinished ? ", finished" : "");
+    }
+}
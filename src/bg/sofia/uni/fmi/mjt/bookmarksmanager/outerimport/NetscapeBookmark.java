@@ -0,0 +1,9 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.outerimport;
+
+import java.util.Set;
+
+//A bookmark as read from a Netscape bookmarks.html export, before its page is analyzed;
+//folder is the innermost folder it has been found in, null for the ones outside any folder.
+
+public record NetscapeBookmark(String folder, String title, String url, Set<String> tags) {
+}
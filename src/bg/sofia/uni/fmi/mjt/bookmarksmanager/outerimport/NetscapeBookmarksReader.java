@@ -0,0 +1,77 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.outerimport;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+//Reads the Netscape bookmarks.html format, exported by Firefox, Safari, Edge and
+//Chrome, as a stream: an element is handed over once it has been parsed and removed
+//from the document right after that, so only the open folders are held in memory.
+//A folder is an H3 followed by the DL of its entries, a bookmark is an A in a DT.
+
+public class NetscapeBookmarksReader {
+    private static final String FOLDER_TAG = "h3";
+    private static final String ENTRIES_TAG = "dl";
+    private static final String BOOKMARK_TAG = "a";
+    private static final String URL_ATTRIBUTE = "href";
+    private static final String TAGS_ATTRIBUTE = "tags";
+    private static final String TAGS_SEPARATOR = ",";
+
+    private NetscapeBookmarksReader() {
+    }
+
+    //place:, javascript: and the other urls which are not pages are skipped
+    public static void read(Reader reader, Consumer<NetscapeBookmark> onBookmark) throws IOException {
+        if (reader == null || onBookmark == null) {
+            throw new IllegalArgumentException("Reader and consumer must not be null!");
+        }
+        //elements are reported when they are closed: a folder's H3 before the DL of its
+        //entries, which closes after them, so the open folders are kept as a stack.
+        //A DD with the folder's description may come between the two, so the folder is
+        //not looked up in the tree
+        Deque<String> openFolders = new ArrayDeque<>();
+        try (StreamParser parser = new StreamParser(Parser.htmlParser()).parse(reader, "")) {
+            Iterator<Element> elements = parser.iterator();
+            while (elements.hasNext()) {
+                Element element = elements.next();
+                if (element.nameIs(FOLDER_TAG)) {
+                    openFolders.push(element.text().strip());
+                } else if (element.nameIs(ENTRIES_TAG)) {
+                    openFolders.poll(); //the top-level DL has no folder
+                } else if (element.nameIs(BOOKMARK_TAG) && isPage(element.attr(URL_ATTRIBUTE))) {
+                    onBookmark.accept(toBookmark(element, openFolders.peek()));
+                }
+                element.remove();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause(); //the iterator can not throw the reader's exceptions itself
+        }
+    }
+
+    private static boolean isPage(String url) {
+        String lowerCaseUrl = url.strip().toLowerCase();
+        return lowerCaseUrl.startsWith("http://") || lowerCaseUrl.startsWith("https://");
+    }
+
+    private static NetscapeBookmark toBookmark(Element link, String folder) {
+        String url = link.attr(URL_ATTRIBUTE).strip();
+        String title = link.text().strip();
+        Set<String> tags = new LinkedHashSet<>();
+        Arrays.stream(link.attr(TAGS_ATTRIBUTE).split(TAGS_SEPARATOR))
+                .map(String::strip)
+                .filter(tag -> !tag.isEmpty())
+                .forEach(tags::add);
+        return new NetscapeBookmark(folder, title.isEmpty() ? url : title, url, tags);
+    }
+}
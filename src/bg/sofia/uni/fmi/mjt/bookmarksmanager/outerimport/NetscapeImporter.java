@@ -0,0 +1,92 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.outerimport;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.Bookmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+//Imports a Netscape bookmarks.html export. The bookmarks are handed over in batches
+//while the file is streamed, before their pages are analyzed: an export of tens of
+//thousands of bookmarks is stored a batch at a time and never held whole in memory.
+//The folders become groups and the bookmark's tags its first keywords.
+
+public class NetscapeImporter {
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final String DEFAULT_GROUP_NAME = "Imported"; //of the bookmarks outside any folder
+
+    private NetscapeImporter() {
+    }
+
+    //the exports are read only from the directory they are put in for the server: a name
+    //leading out of it (an absolute path, "..", a link to another place) is rejected
+    public static Path resolveInDirectory(Path directory, String fileName) throws IOException {
+        if (directory == null || fileName == null || fileName.isBlank()) {
+            throw new IllegalArgumentException("Directory and file name must not be null or blank!");
+        }
+        Path root = directory.toAbsolutePath().normalize();
+        Path file = root.resolve(fileName).normalize();
+        if (!file.startsWith(root) || file.equals(root)
+                || (Files.exists(file) && !file.toRealPath().startsWith(root.toRealPath()))) {
+            throw new IllegalArgumentException(String.format("File %s is not in directory %s!",
+                    fileName, directory));
+        }
+        return file;
+    }
+
+    //returns the number of imported bookmarks
+    public static int importBookmarks(Path file, int batchSize, Consumer<List<Bookmark>> onBatch)
+            throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("File must not be null!");
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importBookmarks(reader, batchSize, onBatch);
+        }
+    }
+
+    public static int importBookmarks(Reader reader, int batchSize, Consumer<List<Bookmark>> onBatch)
+            throws IOException {
+        if (batchSize <= 0 || onBatch == null) {
+            throw new IllegalArgumentException("Consumer must not be null and batch size must be positive!");
+        }
+        List<Bookmark> batch = new ArrayList<>(batchSize);
+        int[] imported = {0};
+        NetscapeBookmarksReader.read(reader, netscapeBookmark -> {
+            batch.add(toBookmark(netscapeBookmark));
+            if (batch.size() == batchSize) {
+                imported[0] += batch.size();
+                onBatch.accept(List.copyOf(batch));
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) {
+            imported[0] += batch.size();
+            onBatch.accept(List.copyOf(batch));
+        }
+        return imported[0];
+    }
+
+    //names and titles are single words, the way the commands take them
+    private static Bookmark toBookmark(NetscapeBookmark netscapeBookmark) {
+        String folder = netscapeBookmark.folder();
+        String groupName = folder == null || folder.isBlank() ? DEFAULT_GROUP_NAME : toWord(folder);
+        Set<String> keywords = netscapeBookmark.tags().stream()
+                .map(tag -> toWord(tag).toLowerCase())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        return new Bookmark(toWord(netscapeBookmark.title()), netscapeBookmark.url(), keywords, groupName);
+    }
+
+    private static String toWord(String text) {
+        return text.strip().replaceAll("\\s+", "-");
+    }
+}
@@ -0,0 +1,74 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.protocol;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+//Every message between client and server (a command or a reply) travels as
+//one frame: 4-byte big-endian length of the payload followed by the UTF-8 payload.
+
+public class FrameCodec {
+    public static final int HEADER_SIZE = Integer.BYTES;
+
+    public static ByteBuffer encode(String message) {
+        if (message == null) {
+            throw new IllegalArgumentException("Framed message can not be null!");
+        }
+        byte[] payload = message.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        frame.putInt(payload.length).put(payload).flip();
+        return frame;
+    }
+
+    //the two methods below are meant for blocking channels only
+    public static void writeFrame(WritableByteChannel channel, String message) throws IOException {
+        ByteBuffer frame = encode(message);
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    public static String readFrame(ReadableByteChannel channel) throws IOException {
+        return readFrame(channel, Integer.MAX_VALUE);
+    }
+
+    //the payload is allocated only after its length has been checked against maxFrameSize,
+    //so a peer (or stray bytes taken for a header) can not make the reader allocate gigabytes
+    public static String readFrame(ReadableByteChannel channel, int maxFrameSize) throws IOException {
+        if (maxFrameSize < 0) {
+            throw new IllegalArgumentException("Max frame size can not be negative!");
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (!readFully(channel, header)) {
+            return null; //the other side closed the connection between two frames
+        }
+        int length = header.flip().getInt();
+        if (length < 0) {
+            throw new ProtocolException("Invalid frame length " + length);
+        }
+        if (length > maxFrameSize) {
+            throw new ProtocolException("Frame exceeds the limit of " + maxFrameSize + " bytes");
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        if (!readFully(channel, payload)) {
+            throw new EOFException("Connection closed in the middle of a frame");
+        }
+        return new String(payload.array(), StandardCharsets.UTF_8);
+    }
+
+    private static boolean readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                if (buffer.position() == 0) {
+                    return false;
+                }
+                throw new EOFException("Connection closed in the middle of a frame");
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,79 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.protocol;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+//Accumulates the bytes of one non-blocking connection across readiness events
+//and cuts them into frames. The buffer grows only up to the biggest allowed frame.
+
+public class FrameDecoder {
+    private static final int INITIAL_CAPACITY = 4096;
+
+    private final int maxFrameSize;
+    private ByteBuffer buffer; //always kept in writing mode between calls
+
+    public FrameDecoder(int maxFrameSize) {
+        if (maxFrameSize <= 0) {
+            throw new IllegalArgumentException("Max frame size must be positive!");
+        }
+        this.maxFrameSize = maxFrameSize;
+        this.buffer = ByteBuffer.allocate(Math.min(INITIAL_CAPACITY, FrameCodec.HEADER_SIZE + maxFrameSize));
+    }
+
+    public int readFrom(ReadableByteChannel channel) throws IOException {
+        if (!buffer.hasRemaining()) {
+            grow();
+        }
+        return channel.read(buffer);
+    }
+
+    public void feed(ByteBuffer bytes) throws ProtocolException {
+        while (bytes.hasRemaining()) {
+            if (!buffer.hasRemaining()) {
+                grow();
+            }
+            int chunk = Math.min(bytes.remaining(), buffer.remaining());
+            buffer.put(buffer.position(), bytes, bytes.position(), chunk);
+            buffer.position(buffer.position() + chunk);
+            bytes.position(bytes.position() + chunk);
+        }
+    }
+
+    //returns null while the next frame has not been fully received yet
+    public String nextFrame() throws ProtocolException {
+        buffer.flip();
+        try {
+            if (buffer.remaining() < FrameCodec.HEADER_SIZE) {
+                return null;
+            }
+            int length = buffer.getInt(buffer.position());
+            if (length < 0 || length > maxFrameSize) {
+                throw new ProtocolException(String.format("Frame of %d bytes " +
+                        "exceeds the limit of %d bytes", length, maxFrameSize));
+            }
+            if (buffer.remaining() < FrameCodec.HEADER_SIZE + length) {
+                return null;
+            }
+            buffer.position(buffer.position() + FrameCodec.HEADER_SIZE);
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            return new String(payload, StandardCharsets.UTF_8);
+        } finally {
+            buffer.compact();
+        }
+    }
+
+    private void grow() throws ProtocolException {
+        int maxCapacity = FrameCodec.HEADER_SIZE + maxFrameSize;
+        if (buffer.capacity() >= maxCapacity) {
+            throw new ProtocolException("Frame exceeds the limit of " + maxFrameSize + " bytes");
+        }
+        ByteBuffer bigger = ByteBuffer.allocate((int) Math.min(2L * buffer.capacity(), maxCapacity));
+        buffer.flip();
+        bigger.put(buffer);
+        buffer = bigger;
+    }
+}
@@ -0,0 +1,83 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.server;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.protocol.FrameCodec;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.protocol.FrameDecoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+//State of one client of a selector based server: the bytes of a partially
+//received command and the replies that the socket has not accepted yet.
+//It is only touched by the thread of the selector the client is registered to.
+
+class ClientConnection {
+    static final int MAX_REQUEST_SIZE = 64 * 1024; //in every server mode
+
+    private final SocketChannel channel;
+    private final FrameDecoder decoder;
+    private final Queue<String> requests;
+    private final Queue<ByteBuffer> outbound;
+    private boolean isBusy; //a command of this client is being executed by a worker
+
+    ClientConnection(SocketChannel channel) {
+        this.channel = channel;
+        this.decoder = new FrameDecoder(MAX_REQUEST_SIZE);
+        this.requests = new ArrayDeque<>();
+        this.outbound = new ArrayDeque<>();
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    //returns false when the client has closed the connection
+    boolean read() throws IOException {
+        int readBytes;
+        while ((readBytes = decoder.readFrom(channel)) > 0) {
+            String request;
+            while ((request = decoder.nextFrame()) != null) {
+                requests.add(request);
+            }
+        }
+        return readBytes >= 0;
+    }
+
+    String nextRequest() {
+        return isBusy ? null : requests.poll();
+    }
+
+    void setBusy(boolean isBusy) {
+        this.isBusy = isBusy;
+    }
+
+    void enqueueReply(String reply) {
+        outbound.add(FrameCodec.encode(reply));
+    }
+
+    //writes as much as the socket accepts without blocking
+    void flush() throws IOException {
+        while (!outbound.isEmpty()) {
+            ByteBuffer frame = outbound.peek();
+            channel.write(frame);
+            if (frame.hasRemaining()) {
+                return;
+            }
+            outbound.poll();
+        }
+    }
+
+    boolean hasPendingWrites() {
+        return !outbound.isEmpty();
+    }
+
+    //no new commands are read while one is still executing, and OP_WRITE is
+    //only requested while there is a reply waiting for the socket
+    int interestOps() {
+        int ops = isBusy ? 0 : SelectionKey.OP_READ;
+        return hasPendingWrites() ? ops | SelectionKey.OP_WRITE : ops;
+    }
+}
@@ -0,0 +1,207 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.server;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.command.Command;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.command.CommandCreator;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.command.CommandExecutor;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+//One selector loop of the ReactorServer. It only does I/O and cheap commands,
+//the blocking ones (page fetches, file writes) are handed to the workers pool
+//and their replies come back through the completions queue.
+
+class Reactor implements Runnable {
+    private static final String SERVER_BUSY_MESSAGE = "Server is busy at the moment. " +
+            "Please, try again later.";
+    private static final String COMMAND_FAILED_MESSAGE = "Unexpected error occurred " +
+            "while executing the command.";
+
+    private final Selector selector;
+    private final CommandExecutor executor;
+    private final ExecutorService workers;
+    private final Queue<SocketChannel> pendingRegistrations;
+    private final Queue<Runnable> completions;
+    private volatile boolean isWorking;
+
+    Reactor(CommandExecutor executor, ExecutorService workers) {
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open reactor's selector", e);
+        }
+        this.executor = executor;
+        this.workers = workers;
+        this.pendingRegistrations = new ConcurrentLinkedQueue<>();
+        this.completions = new ConcurrentLinkedQueue<>();
+        this.isWorking = true;
+    }
+
+    void register(SocketChannel clientChannel) {
+        pendingRegistrations.add(clientChannel);
+        selector.wakeup();
+    }
+
+    void stop() {
+        isWorking = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (isWorking) {
+                selector.select();
+                registerPendingChannels();
+                runCompletions();
+
+                Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+                while (keyIterator.hasNext()) {
+                    SelectionKey key = keyIterator.next();
+                    keyIterator.remove();
+                    if (key.isValid()) {
+                        handleKey(key);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            ExceptionsLogger.logClientException(e);
+        } finally {
+            closeSelector();
+        }
+    }
+
+    private void registerPendingChannels() {
+        SocketChannel clientChannel;
+        while ((clientChannel = pendingRegistrations.poll()) != null) {
+            try {
+                clientChannel.configureBlocking(false);
+                clientChannel.register(selector, SelectionKey.OP_READ,
+                        new ClientConnection(clientChannel));
+            } catch (IOException e) {
+                ExceptionsLogger.logClientException(e);
+                closeChannel(clientChannel);
+            }
+        }
+    }
+
+    private void runCompletions() {
+        Runnable completion;
+        while ((completion = completions.poll()) != null) {
+            completion.run();
+        }
+    }
+
+    private void handleKey(SelectionKey key) {
+        ClientConnection connection = (ClientConnection) key.attachment();
+        try {
+            if (key.isReadable() && !connection.read()) {
+                System.out.println("Client has closed the connection");
+                closeConnection(key);
+                return;
+            }
+            processRequests(key, connection);
+            if (key.isValid() && key.isWritable()) {
+                connection.flush();
+            }
+            updateInterestOps(key, connection);
+        } catch (IOException e) {
+            ExceptionsLogger.logClientException(e);
+            closeConnection(key);
+        }
+    }
+
+    private void processRequests(SelectionKey key, ClientConnection connection) throws IOException {
+        String clientInput;
+        while ((clientInput = connection.nextRequest()) != null) {
+            Command command = CommandCreator.newCommand(clientInput);
+            if (CommandExecutor.isBlocking(command)) {
+                dispatchToWorkers(key, connection, command);
+            } else {
+                connection.enqueueReply(executor.execute(command, connection.getChannel()));
+            }
+        }
+        connection.flush();
+    }
+
+    private void dispatchToWorkers(SelectionKey key, ClientConnection connection, Command command) {
+        //no more commands of this client are executed until this one is answered,
+        //so the commands of one connection are still executed in order
+        connection.setBusy(true);
+        try {
+            workers.execute(() -> {
+                String output;
+                try {
+                    output = executor.execute(command, connection.getChannel());
+                } catch (RuntimeException e) {
+                    ExceptionsLogger.logClientException(e);
+                    output = COMMAND_FAILED_MESSAGE;
+                }
+                String reply = output;
+                completions.add(() -> completeRequest(key, connection, reply));
+                selector.wakeup();
+            });
+        } catch (RejectedExecutionException e) {
+            ExceptionsLogger.logClientException(e);
+            connection.setBusy(false);
+            connection.enqueueReply(SERVER_BUSY_MESSAGE);
+        }
+    }
+
+    private void completeRequest(SelectionKey key, ClientConnection connection, String reply) {
+        if (!key.isValid()) {
+            return;
+        }
+        connection.setBusy(false);
+        connection.enqueueReply(reply);
+        try {
+            processRequests(key, connection);
+            updateInterestOps(key, connection);
+        } catch (IOException e) {
+            ExceptionsLogger.logClientException(e);
+            closeConnection(key);
+        }
+    }
+
+    private void updateInterestOps(SelectionKey key, ClientConnection connection) {
+        if (key.isValid()) {
+            key.interestOps(connection.interestOps());
+        }
+    }
+
+    private void closeConnection(SelectionKey key) {
+        key.cancel();
+        closeChannel(key.channel());
+        executor.connectionClosed((SocketChannel) key.channel());
+    }
+
+    private void closeSelector() {
+        try {
+            for (SelectionKey key : selector.keys()) {
+                closeChannel(key.channel());
+            }
+            selector.close();
+        } catch (IOException | ClosedSelectorException e) {
+            ExceptionsLogger.logClientException(e);
+        }
+    }
+
+    private static void closeChannel(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            ExceptionsLogger.logClientException(e);
+        }
+    }
+}
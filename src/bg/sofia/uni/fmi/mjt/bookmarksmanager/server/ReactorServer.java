@@ -0,0 +1,109 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.server;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.command.CommandExecutor;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+//Multi-reactor mode of the server: one acceptor thread, one selector (Reactor)
+//per core and a bounded pool of workers for the slow commands, so that a
+//single add-to waiting on page fetches does not stall all other clients.
+
+public class ReactorServer {
+    private static final String SERVER_HOST = "localhost";
+    private static final int DEFAULT_REACTORS_COUNT = Runtime.getRuntime().availableProcessors();
+    private static final int DEFAULT_WORKERS_COUNT = 4 * DEFAULT_REACTORS_COUNT;
+    private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    private static final long WORKERS_KEEP_ALIVE_SECONDS = 60;
+
+    private final int port;
+    private final Reactor[] reactors;
+    private final ThreadPoolExecutor workers;
+    private ServerSocketChannel serverSocketChannel;
+    private volatile boolean isServerWorking;
+    private int nextReactor;
+
+    public ReactorServer() {
+        this(Server.SERVER_PORT, new CommandExecutor(), DEFAULT_REACTORS_COUNT,
+                DEFAULT_WORKERS_COUNT, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public ReactorServer(int port, CommandExecutor executor, int reactorsCount,
+                         int workersCount, int queueCapacity) {
+        if (executor == null || reactorsCount <= 0 || workersCount <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Executor must not be null and " +
+                    "reactors/workers/queue sizes must be positive!");
+        }
+        this.port = port;
+        this.workers = new ThreadPoolExecutor(workersCount, workersCount,
+                WORKERS_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new ThreadPoolExecutor.AbortPolicy());
+        this.reactors = new Reactor[reactorsCount];
+        for (int i = 0; i < reactorsCount; i++) {
+            reactors[i] = new Reactor(executor, workers);
+        }
+    }
+
+    public void start() {
+        try {
+            serverSocketChannel = ServerSocketChannel.open();
+            serverSocketChannel.bind(new InetSocketAddress(SERVER_HOST, port));
+        } catch (IOException e) {
+            throw new UncheckedIOException("There is a problem with the server socket", e);
+        }
+        isServerWorking = true;
+        for (int i = 0; i < reactors.length; i++) {
+            new Thread(reactors[i], "reactor-" + i).start();
+        }
+        new Thread(this::acceptClients, "acceptor").start();
+    }
+
+    public void stop() {
+        isServerWorking = false;
+        try {
+            if (serverSocketChannel != null) {
+                serverSocketChannel.close();
+            }
+        } catch (IOException e) {
+            ExceptionsLogger.logClientException(e);
+        }
+        for (Reactor reactor : reactors) {
+            reactor.stop();
+        }
+        workers.shutdown();
+    }
+
+    public int getPort() {
+        try {
+            return ((InetSocketAddress) serverSocketChannel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Server socket is not bound", e);
+        }
+    }
+
+    private void acceptClients() {
+        while (isServerWorking) {
+            try {
+                SocketChannel clientChannel = serverSocketChannel.accept();
+                reactors[nextReactor].register(clientChannel);
+                nextReactor = (nextReactor + 1) % reactors.length;
+            } catch (AsynchronousCloseException e) {
+                return; //the server has been stopped
+            } catch (IOException e) {
+                ExceptionsLogger.logClientException(e);
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        new ReactorServer().start();
+    }
+}
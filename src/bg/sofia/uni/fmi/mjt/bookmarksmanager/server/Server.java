@@ -3,16 +3,15 @@ package bg.sofia.uni.fmi.mjt.bookmarksmanager.server;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.BookmarksManager;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.command.CommandCreator;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.command.CommandExecutor;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
 import java.util.Set;
 
@@ -143,10 +142,19 @@ import java.util.Set;
 public class Server {
     public static final int SERVER_PORT = 7777;
     private static final String SERVER_HOST = "localhost";
-    private static final int BUFFER_SIZE = 4096;
-    private static final CommandExecutor executor = new CommandExecutor();
+    private static final String REACTOR_MODE = "--reactor";
+    private static final String VIRTUAL_THREADS_MODE = "--virtual-threads";
 
     public static void main(String[] args) {
+        if (args.length > 0 && REACTOR_MODE.equals(args[0])) {
+            new ReactorServer().start();
+            return;
+        }
+        if (args.length > 0 && VIRTUAL_THREADS_MODE.equals(args[0])) {
+            new VirtualThreadServer().start();
+            return;
+        }
+        CommandExecutor executor = new CommandExecutor();
         try (ServerSocketChannel serverSocketChannel = ServerSocketChannel.open()) {
 
             serverSocketChannel.bind(new InetSocketAddress(SERVER_HOST, SERVER_PORT));
@@ -155,8 +163,6 @@ public class Server {
             Selector selector = Selector.open();
             serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
 
-            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
-
             while (true) {
                 int readyChannels = selector.select();
                 if (readyChannels == 0) {
@@ -169,44 +175,53 @@ public class Server {
 
                 while (keyIterator.hasNext()) {
                     SelectionKey key = keyIterator.next();
-                    if (key.isReadable()) {
-                        SocketChannel sc = (SocketChannel) key.channel();
-
-                        buffer.clear();
-                        int r = sc.read(buffer);
-                        if (r < 0) {
-                            System.out.println("Client has closed the connection");
-                            sc.close();
-                            continue;
-                        }
-                        buffer.flip();
-
-                        byte[] clientInputBytes = new byte[buffer.remaining()];
-                        buffer.get(clientInputBytes);
-
-                       String clientInput = new String(clientInputBytes, StandardCharsets.UTF_8);
-
-                        String output = executor.execute(CommandCreator.newCommand(clientInput), sc);
-
-                        System.out.println("Sent to executor");
-
-                        buffer.clear();
-                        buffer.put(output.getBytes());
-                        buffer.flip();
-                        sc.write(buffer);
-
-                    } else if (key.isAcceptable()) {
+                    keyIterator.remove();
+                    if (key.isAcceptable()) {
                         ServerSocketChannel sockChannel = (ServerSocketChannel) key.channel();
                         SocketChannel accept = sockChannel.accept();
                         accept.configureBlocking(false);
-                        accept.register(selector, SelectionKey.OP_READ);
+                        accept.register(selector, SelectionKey.OP_READ, new ClientConnection(accept));
+                        continue;
                     }
-                    keyIterator.remove();
+                    handleClient(key, executor);
                 }
             }
         } catch (IOException e) {
             throw new RuntimeException("There is a problem with the server socket", e);
         }
     }
-}
 
+    private static void handleClient(SelectionKey key, CommandExecutor executor) {
+        ClientConnection connection = (ClientConnection) key.attachment();
+        SocketChannel sc = connection.getChannel();
+        try {
+            if (key.isReadable()) {
+                if (!connection.read()) {
+                    System.out.println("Client has closed the connection");
+                    key.cancel();
+                    sc.close();
+                    executor.connectionClosed(sc);
+                    return;
+                }
+                String clientInput;
+                while ((clientInput = connection.nextRequest()) != null) {
+                    String output = executor.execute(CommandCreator.newCommand(clientInput), sc);
+                    System.out.println("Sent to executor");
+                    connection.enqueueReply(output);
+                }
+            }
+            //a reply the socket could not take at once is finished on OP_WRITE
+            connection.flush();
+            key.interestOps(connection.interestOps());
+        } catch (IOException e) {
+            ExceptionsLogger.logClientException(e);
+            key.cancel();
+            try {
+                sc.close();
+            } catch (IOException closeException) {
+                ExceptionsLogger.logClientException(closeException);
+            }
+            executor.connectionClosed(sc);
+        }
+    }
+}
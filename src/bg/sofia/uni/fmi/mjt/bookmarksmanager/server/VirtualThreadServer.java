@@ -0,0 +1,113 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.server;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.command.CommandCreator;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.command.CommandExecutor;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.protocol.FrameCodec;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+//Thread-per-connection mode of the server built on virtual threads. Every client
+//is served with plain blocking reads and writes- while a command waits on Jsoup,
+//Bitly or a cleanup probe only its cheap virtual thread is parked.
+
+public class VirtualThreadServer {
+    private static final String SERVER_HOST = "localhost";
+    private static final String COMMAND_FAILED_MESSAGE = "Unexpected error occurred " +
+            "while executing the command.";
+
+    private final int port;
+    private final CommandExecutor executor;
+    private final ExecutorService connections;
+    private ServerSocketChannel serverSocketChannel;
+    private volatile boolean isServerWorking;
+
+    public VirtualThreadServer() {
+        this(Server.SERVER_PORT, new CommandExecutor());
+    }
+
+    public VirtualThreadServer(int port, CommandExecutor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Command executor can not be null!");
+        }
+        this.port = port;
+        this.executor = executor;
+        this.connections = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    public void start() {
+        try {
+            serverSocketChannel = ServerSocketChannel.open();
+            serverSocketChannel.bind(new InetSocketAddress(SERVER_HOST, port));
+        } catch (IOException e) {
+            throw new UncheckedIOException("There is a problem with the server socket", e);
+        }
+        isServerWorking = true;
+        Thread.ofPlatform().name("acceptor").start(this::acceptClients);
+    }
+
+    public void stop() {
+        isServerWorking = false;
+        try {
+            if (serverSocketChannel != null) {
+                serverSocketChannel.close();
+            }
+        } catch (IOException e) {
+            ExceptionsLogger.logClientException(e);
+        }
+        connections.shutdownNow();
+    }
+
+    public int getPort() {
+        try {
+            return ((InetSocketAddress) serverSocketChannel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Server socket is not bound", e);
+        }
+    }
+
+    private void acceptClients() {
+        while (isServerWorking) {
+            try {
+                SocketChannel clientChannel = serverSocketChannel.accept();
+                connections.execute(() -> serveClient(clientChannel));
+            } catch (AsynchronousCloseException e) {
+                return; //the server has been stopped
+            } catch (IOException e) {
+                ExceptionsLogger.logClientException(e);
+            }
+        }
+    }
+
+    private void serveClient(SocketChannel clientChannel) {
+        try (clientChannel) {
+            String clientInput;
+            while ((clientInput = FrameCodec.readFrame(clientChannel, ClientConnection.MAX_REQUEST_SIZE)) != null) {
+                String output;
+                try {
+                    output = executor.execute(CommandCreator.newCommand(clientInput), clientChannel);
+                } catch (RuntimeException e) { //the client is answered and its connection kept, as by the reactors
+                    ExceptionsLogger.logClientException(e);
+                    output = COMMAND_FAILED_MESSAGE;
+                }
+                FrameCodec.writeFrame(clientChannel, output);
+            }
+            System.out.println("Client has closed the connection");
+        } catch (IOException e) {
+            ExceptionsLogger.logClientException(e);
+        } finally {
+            executor.connectionClosed(clientChannel);
+        }
+    }
+
+    public static void main(String[] args) {
+        new VirtualThreadServer().start();
+    }
+}
@@ -6,22 +6,32 @@ import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.GroupAlreadyExistsExcept
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.NoSuchBookmarkException;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.NoSuchGroupException;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.linkcheck.LinkProber;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.outerimport.ChromeBookmark;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.outerimport.ChromeImport;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.outerimport.ChromeImportState;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.outerimport.ChromeImporter;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.outerimport.ImportProgress;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage.wal.FsyncPolicy;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage.wal.WalRecord;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage.wal.WriteAheadLog;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer.HtmlTokenizer;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.user.User;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Serial;
 import java.io.Serializable;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.time.Duration;
-import java.util.Collection;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -36,7 +46,10 @@ import java.util.concurrent.Executors;
 import static bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger.logSth;
 import static java.nio.file.Files.exists;
 
-public class BookmarksGroupStorage implements Serializable {
+public class BookmarksGroupStorage implements Serializable, Closeable {
+    //pinned to the first version's, whose users file is still migrated on startup
+    @Serial
+    private static final long serialVersionUID = 4335349043634581175L;
     private static final int ERROR_STATUS_CODE = 400;
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
 
@@ -47,25 +60,40 @@ public class BookmarksGroupStorage implements Serializable {
     //Atomic Updates – To ensure that file modifications reflect in memory (groups map).
 
     private final Map<String, BookmarksGroup> groups;
-    transient
-    private final String fileName;
+    private final String fileName; //the snapshot; the log of later mutations is next to it
+    private ChromeImportState chromeImport; //null until the first import, guarded by this
+    private transient FsyncPolicy fsyncPolicy;
+    private transient WriteAheadLog log;
+    private transient volatile boolean isClosed; //evicted from memory, a newer copy may be loaded
 
-    private static final Duration PROBE_TIMEOUT = Duration.ofSeconds(5);
-    private static final int NOT_FOUND = 400;
+    private static final String LOG_SUFFIX = ".wal";
+    private static final String SNAPSHOT_TMP_SUFFIX = ".tmp";
+    private static final int MIN_COMPACTION_RECORDS = 10_000;
+    public static final FsyncPolicy DEFAULT_FSYNC_POLICY = FsyncPolicy.GROUPED;
 
     public BookmarksGroupStorage(String fileName) {
-        this.groups = new HashMap<>();
+        this(fileName, DEFAULT_FSYNC_POLICY);
+    }
+
+    //restores the groups from the last snapshot and replays the log on top of it
+    public BookmarksGroupStorage(String fileName, FsyncPolicy fsyncPolicy) {
+        this.groups = new ConcurrentHashMap<>();
         this.fileName = fileName;
+        this.fsyncPolicy = fsyncPolicy;
 
         if (!exists(Path.of(fileName))) {
             FileCreator.createFile(fileName);
+        } else {
+            loadSnapshot();
         }
+        replayLog();
     }
 
 
     public BookmarksGroupStorage(Map<String, BookmarksGroup> groups, String fileName) {
         this.groups = groups;
         this.fileName = fileName;
+        this.fsyncPolicy = DEFAULT_FSYNC_POLICY;
         FileCreator.createFile(this.fileName);
     }
 
@@ -78,17 +106,17 @@ public class BookmarksGroupStorage implements Serializable {
         //groupName so there is no need to do it here
     }
 
-    public void createNewGroup(String groupName) {
+    public synchronized void createNewGroup(String groupName) {
         if (groups.containsKey(groupName)) {
             throw new GroupAlreadyExistsException(String.format("A " +
                     "group with name %s already exists", groupName));
         }
 
-        groups.put(groupName, new BookmarksGroup(groupName, new HashMap<>()));
-        //updateGroupsFile();
+        groups.put(groupName, new BookmarksGroup(groupName, new ConcurrentHashMap<>()));
+        appendToLog(WalRecord.createGroup(groupName));
     }
 
-    public void addNewBookmarkToGroup(Bookmark bookmark, String groupName) {
+    public synchronized void addNewBookmarkToGroup(Bookmark bookmark, String groupName) {
         if (groupName == null || groupName.isEmpty() || groupName.isBlank() ||
                 bookmark == null) {
             throw new IllegalArgumentException("Group's name/bookmark can not be null!");
@@ -97,14 +125,46 @@ public class BookmarksGroupStorage implements Serializable {
             throw new NoSuchGroupException(String.format("There is no group %s.",
                     groupName));
         }
-        if (groups.get(groupName).getBookmarks().contains(bookmark)) {
+        if (groups.get(groupName).contains(bookmark)) {
             return;
         }
         groups.get(groupName).addNewBookmark(bookmark);
-        updateGroupsFile();
+        appendToLog(WalRecord.addBookmark(groupName, bookmark));
     }
 
-    public void removeBookmarkFromGroup(String bookmarkTitle, String groupName) {
+    //a batch of an import: the missing groups are created, bookmarks whose title is taken
+    //in their group are skipped and the rest are logged and flushed together; returns the added ones
+    public synchronized List<Bookmark> addBookmarks(List<Bookmark> bookmarks) {
+        if (bookmarks == null) {
+            throw new IllegalArgumentException("Bookmarks can not be null!");
+        }
+        List<WalRecord> records = new ArrayList<>();
+        List<Bookmark> added = new ArrayList<>();
+        for (Bookmark bookmark : bookmarks) {
+            BookmarksGroup group = groups.get(bookmark.groupName());
+            if (group == null) {
+                group = new BookmarksGroup(bookmark.groupName(), new ConcurrentHashMap<>());
+                groups.put(bookmark.groupName(), group);
+                records.add(WalRecord.createGroup(bookmark.groupName()));
+            }
+            if (!group.containsBookmark(bookmark.title())) {
+                group.addNewBookmark(bookmark);
+                records.add(WalRecord.addBookmark(bookmark.groupName(), bookmark));
+                added.add(bookmark);
+            }
+        }
+        try {
+            log().appendAll(records);
+        } catch (IOException e) {
+            ExceptionsLogger.logClientException(e);
+            return added;
+        }
+        flush();
+        return added;
+    }
+
+    //returns the removed bookmark
+    public synchronized Bookmark removeBookmarkFromGroup(String bookmarkTitle, String groupName) {
         if (groupName == null || groupName.isEmpty() || groupName.isBlank() ||
                 bookmarkTitle == null || bookmarkTitle.isEmpty() ||
                 bookmarkTitle.isBlank()) {
@@ -125,36 +185,164 @@ public class BookmarksGroupStorage implements Serializable {
                     "no bookmark %s to be removed!", groupName, bookmarkTitle));
         }
         groups.get(groupName).removeBookmark(toRemove);
-        updateGroupsFile();
+        appendToLog(WalRecord.removeBookmark(groupName, toRemove.title()));
+        return toRemove;
+    }
+
+    //swaps a bookmark for its updated version, unless it has been removed meanwhile
+    public synchronized boolean replaceBookmark(String groupName, Bookmark oldBookmark, Bookmark newBookmark) {
+        if (newBookmark == null || newBookmark.title() == null) {
+            throw new IllegalArgumentException("The new bookmark and its title can not be null!");
+        }
+        BookmarksGroup group = groups.get(groupName);
+        if (group == null || !group.contains(oldBookmark)) {
+            return false;
+        }
+        group.removeBookmark(oldBookmark);
+        appendToLog(WalRecord.removeBookmark(groupName, oldBookmark.title()));
+        group.addNewBookmark(newBookmark);
+        appendToLog(WalRecord.addBookmark(groupName, newBookmark));
+        return true;
     }
 
+    //returns the bookmarks of the imported groups, groups the user already has are skipped
     public List<Bookmark> importBookmarksFromChrome() {
-        Map<String, BookmarksGroup> chromeGroups = ChromeImporter.importChromeGroups();
-        if (chromeGroups == null) {
+        return importBookmarksFromChrome(HtmlTokenizer.getDefault());
+    }
+
+    public List<Bookmark> importBookmarksFromChrome(HtmlTokenizer tokenizer) {
+        ImportReport report = importBookmarksFromChrome(tokenizer, new ImportProgress());
+        return report == null ? null : report.imported();
+    }
+
+    //the pages are analyzed without holding the storage, the changes are applied after
+    //that together and written with one snapshot, along with what has been imported
+    public ImportReport importBookmarksFromChrome(HtmlTokenizer tokenizer, ImportProgress progress) {
+        Set<String> storedUrls = getUrls();
+        ChromeImport chromeImport = ChromeImporter.importChanges(tokenizer, ChromeImporter.DEFAULT_CONCURRENCY,
+                progress, getChromeImportState(), chromeBookmark -> storedUrls.contains(chromeBookmark.url()));
+        if (chromeImport == null) {
             return null;   //exceptions have already been logged in the
             // methods of the ChromeImporter class, so not needed here
         }
-        for (Map.Entry<String, BookmarksGroup> groupEntry : chromeGroups.entrySet()) {
-            if (!groups.containsKey(groupEntry.getKey())) {
-                groups.put(groupEntry.getKey(), groupEntry.getValue());
+        return applyChromeImport(chromeImport);
+    }
+
+    public synchronized ChromeImportState getChromeImportState() {
+        return chromeImport == null ? ChromeImportState.empty() : chromeImport;
+    }
+
+    //a changed bookmark replaces its previous version; if the user has removed or replaced that
+    //meanwhile, the change is skipped as well, so a removed bookmark does not come back
+    private synchronized ImportReport applyChromeImport(ChromeImport changes) {
+        boolean isChanged = !changes.state().equals(chromeImport);
+        for (String groupName : changes.groupNames()) {
+            isChanged |= groups.putIfAbsent(groupName,
+                    new BookmarksGroup(groupName, new ConcurrentHashMap<>())) == null;
+        }
+        List<Bookmark> removed = new ArrayList<>();
+        List<Bookmark> imported = new ArrayList<>();
+        for (Bookmark bookmark : changes.imported()) {
+            ChromeBookmark previousVersion = changes.replaced().get(bookmark);
+            if (previousVersion != null) {
+                Bookmark stored = findStored(previousVersion);
+                if (stored == null) {
+                    continue;
+                }
+                groups.get(previousVersion.groupName()).removeBookmark(stored);
+                removed.add(stored);
             }
+            groups.computeIfAbsent(bookmark.groupName(), name -> new BookmarksGroup(name, new ConcurrentHashMap<>()))
+                    .addNewBookmark(bookmark);
+            imported.add(bookmark);
+        }
+        chromeImport = changes.state();
+        if (isChanged || !imported.isEmpty() || !removed.isEmpty()) {
+            updateGroupsFile();
         }
-        updateGroupsFile();
-        return chromeGroups.values().stream().map(BookmarksGroup::
-                getBookmarks).flatMap(Collection::stream).toList();
+        return new ImportReport(imported, removed);
     }
 
-    public void updateGroupsFile() {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
-            //for (BookmarksGroup group : groups.values()) {
-            //  writer.write(GSON.toJson(group));
-            //writer.newLine();
+    private Bookmark findStored(ChromeBookmark chromeBookmark) {
+        BookmarksGroup group = groups.get(chromeBookmark.groupName());
+        if (group == null) {
+            return null;
+        }
+        return group.getBookmarks().stream()
+                .filter(bookmark -> bookmark.title().equals(chromeBookmark.title())
+                        && bookmark.url().equals(chromeBookmark.url()))
+                .findFirst()
+                .orElse(null);
+    }
 
+    //compaction: writes the whole storage as a new snapshot and empties the log
+    public synchronized void updateGroupsFile() {
+        if (isClosed) {
+            return;
+        }
+        Path snapshot = Path.of(fileName);
+        Path tmpSnapshot = Path.of(fileName + SNAPSHOT_TMP_SUFFIX);
+        try (BufferedWriter writer = Files.newBufferedWriter(tmpSnapshot)) {
             writer.write(GSON.toJson(this));
-            //}
         } catch (IOException e) {
             ExceptionsLogger.logClientException(e);
+            return;
+        }
+        try {
+            Files.move(tmpSnapshot, snapshot, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            log().truncate();
+        } catch (IOException e) {
+            ExceptionsLogger.logClientException(e);
+        }
+    }
+
+    //forces the appended records to disk and compacts the log if it has grown enough
+    public synchronized void flush() {
+        if (isClosed) {
+            return;
+        }
+        try {
+            log().sync();
+        } catch (IOException e) {
+            ExceptionsLogger.logClientException(e);
+        }
+        compactIfNeeded();
+    }
+
+    //syncs what an idle storage has appended but its fsync policy has not synced yet
+    public synchronized void syncLog() {
+        if (isClosed || log == null) {
+            return;
+        }
+        try {
+            log.syncIfDue();
+        } catch (IOException e) {
+            ExceptionsLogger.logClientException(e);
+        }
+    }
+
+    //flushes and releases the log; later flushes of this copy are ignored so that
+    //it can not compact over the changes of a copy loaded after it
+    @Override
+    public synchronized void close() {
+        if (isClosed) {
+            return;
         }
+        flush();
+        isClosed = true;
+        try {
+            if (log != null) {
+                log.close();
+                log = null;
+            }
+        } catch (IOException e) {
+            ExceptionsLogger.logClientException(e);
+        }
+    }
+
+    public int getBookmarksCount() {
+        return groups.values().stream().mapToInt(BookmarksGroup::size).sum();
     }
 
     public String getFileName() {
@@ -184,69 +372,140 @@ public class BookmarksGroupStorage implements Serializable {
     }
 
 
-    public int cleanUp() {
+    //returns the removed bookmarks
+    public List<Bookmark> cleanUp() {
+        return cleanUp(LinkProber.getDefault());
+    }
 
-        HttpClient client = HttpClient.newBuilder()
-                .followRedirects(HttpClient.Redirect.NORMAL)
-                .version(HttpClient.Version.HTTP_2)
-                .connectTimeout(PROBE_TIMEOUT)
-                .build();
+    //the links are probed without holding the storage, so the user's other commands
+    //are not blocked meanwhile; only the removal of the dead ones is synchronized
+    public List<Bookmark> cleanUp(LinkProber prober) {
+        Set<String> invalidUrls = new HashSet<>();
+        prober.probeAll(getUrls()).forEach((url, statusCode) -> {
+            if (!LinkProber.isValid(statusCode)) {
+                invalidUrls.add(url);
+            }
+        });
+        return removeBookmarksByUrl(invalidUrls);
+    }
 
-        int removedTotal = 0;
+    public synchronized Set<String> getUrls() {
+        Set<String> urls = new HashSet<>();
+        for (BookmarksGroup group : groups.values()) {
+            group.getBookmarks().forEach(bookmark -> urls.add(bookmark.url()));
+        }
+        return urls;
+    }
 
+    //returns the removed bookmarks, the ones added with these urls while they were probed included
+    public synchronized List<Bookmark> removeBookmarksByUrl(Set<String> urls) {
+        List<Bookmark> removed = new ArrayList<>();
+        if (urls == null || urls.isEmpty()) {
+            return removed;
+        }
         for (BookmarksGroup group : groups.values()) {
-            var snapshot = new java.util.ArrayList<>(group.getBookmarks());
-            var badUrls = new java.util.HashSet<String>();
-
-            for (Bookmark bm : snapshot) {
-                int code = probeGet(client, bm.url());
-                if (code >= NOT_FOUND || code == -1) {
-                    badUrls.add(bm.url());
-                    System.err.println("Invalid url added: " + bm.url());
+            List<Bookmark> toRemove = group.getBookmarks().stream()
+                    .filter(bookmark -> urls.contains(bookmark.url()))
+                    .toList();
+            if (!toRemove.isEmpty()) {
+                group.removeBookmarksByUrl(urls);
+                for (Bookmark bookmark : toRemove) {
+                    appendToLog(WalRecord.removeBookmark(group.getGroupName(), bookmark.title()));
+                    removed.add(bookmark);
                 }
             }
+        }
+        return removed;
+    }
 
-            if (!badUrls.isEmpty()) {
-                int before = group.getBookmarks().size();
-                group.removeBookmarksByUrl(badUrls);
-                removedTotal += (before - group.getBookmarks().size());
-            }
+    private WriteAheadLog log() throws IOException {
+        if (log == null) {
+            log = new WriteAheadLog(Path.of(fileName + LOG_SUFFIX),
+                    fsyncPolicy == null ? DEFAULT_FSYNC_POLICY : fsyncPolicy);
         }
+        return log;
+    }
 
-        if (removedTotal > 0) {
-            updateGroupsFile();
-            System.err.println("Group's file updated.");
+    private void appendToLog(WalRecord record) {
+        try {
+            log().append(record);
+        } catch (IOException e) {
+            ExceptionsLogger.logClientException(e);
+            return;
         }
-        return removedTotal;
+        compactIfNeeded();
     }
 
-    private int probeGet(HttpClient client, String url) {
-        final URI uri;
+    //the snapshot is rewritten only after the log has grown with a number of records
+    //proportional to the storage's size, so each mutation stays O(1) amortized
+    private void compactIfNeeded() {
         try {
-            uri = URI.create(url.trim());
-        } catch (IllegalArgumentException e) {
+            if (log().getRecordsCount() >= Math.max(MIN_COMPACTION_RECORDS, getBookmarksCount())) {
+                updateGroupsFile();
+            }
+        } catch (IOException e) {
             ExceptionsLogger.logClientException(e);
-            System.err.println("Uri never created!");
-            return -1;
         }
+    }
+
+    private void loadSnapshot() {
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(fileName))) {
+            BookmarksGroupStorage snapshot = GSON.fromJson(reader, BookmarksGroupStorage.class);
+            if (snapshot == null || snapshot.groups == null) {
+                return; //empty file of a newly registered user
+            }
+            for (BookmarksGroup group : snapshot.groups.values()) {
+                BookmarksGroup restored = new BookmarksGroup(group.getGroupName(), new ConcurrentHashMap<>());
+                group.getBookmarks().forEach(restored::addNewBookmark);
+                groups.put(group.getGroupName(), restored);
+            }
+            chromeImport = snapshot.chromeImport;
+        } catch (IOException | JsonParseException e) {
+            ExceptionsLogger.logClientException(e);
+        }
+    }
 
+    private void replayLog() {
         try {
-            HttpRequest req = HttpRequest.newBuilder(uri)
-                    .GET()
-                    .timeout(PROBE_TIMEOUT)
-                    .build();
-            HttpResponse<Void> res = client.send(req, HttpResponse.BodyHandlers.discarding());
-            System.err.println("Status code: " + res.statusCode());
-            return res.statusCode();
-        } catch (InterruptedException ie) {
-            Thread.currentThread().interrupt();
-            ExceptionsLogger.logClientException(ie);
-            //System.err.println("InterruptedException: " + ie.getMessage());
-            return -1;
-        } catch (IOException ioe) {
-            ExceptionsLogger.logClientException(ioe);
-            //System.err.println("IOException: " + ioe.getMessage());
-            return -1;
+            log().replay(this::applyRecord);
+        } catch (IOException e) {
+            ExceptionsLogger.logClientException(e);
+        }
+    }
+
+    private void applyRecord(WalRecord record) {
+        BookmarksGroup group = groups.computeIfAbsent(record.groupName(),
+                name -> new BookmarksGroup(name, new ConcurrentHashMap<>()));
+        switch (record.type()) {
+            case CREATE_GROUP -> { } //computeIfAbsent has already created it
+            case ADD_BOOKMARK -> group.addNewBookmark(record.bookmark());
+            case REMOVE_BOOKMARK -> group.getBookmarks().stream()
+                    .filter(bookmark -> bookmark.title().equalsIgnoreCase(record.bookmarkTitle()))
+                    .findFirst().ifPresent(group::removeBookmark);
+        }
+    }
+
+    //a user's record keeps only the name of the groups file, the groups themselves
+    //are restored from its snapshot and log
+    @Serial
+    private Object writeReplace() {
+        return new StorageFile(fileName);
+    }
+
+    private record StorageFile(String fileName) implements Serializable {
+        @Serial
+        private Object readResolve() {
+            return new BookmarksGroupStorage(fileName);
+        }
+    }
+
+    //users saved before the records existed carry the whole groups map, which
+    //may be older than the snapshot and log on disk
+    @Serial
+    private Object readResolve() {
+        if (fileName != null && (exists(Path.of(fileName)) || exists(Path.of(fileName + LOG_SUFFIX)))) {
+            return new BookmarksGroupStorage(fileName);
         }
+        return this;
     }
 }
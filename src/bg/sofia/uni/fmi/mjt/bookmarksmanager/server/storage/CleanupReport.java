@@ -0,0 +1,11 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.Bookmark;
+
+import java.util.List;
+
+//The progress of the latest pass of the background cleanup over one user's links.
+
+public record CleanupReport(int checkedLinks, int totalLinks, List<Bookmark> removedBookmarks,
+                            boolean isFinished) {
+}
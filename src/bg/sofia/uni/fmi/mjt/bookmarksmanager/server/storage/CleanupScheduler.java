@@ -0,0 +1,320 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.Bookmark;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.linkcheck.LinkHealthCache;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.linkcheck.LinkProber;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.user.User;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+//Removes the users' dead links in the background. The users are taken one after
+//another and their links are probed in batches of batchSize, one batch per interval,
+//so the cleanup never probes more than its rate budget. The position in each user's
+//links is saved after every batch, so a restarted server resumes where it stopped.
+//A link is removed only when its server answers that it is gone; a link that can not
+//be reached or answers with another error is removed once it has failed in
+//FAILURES_BEFORE_REMOVAL passes in a row, as counted by the prober's health cache.
+//The cleanup command of a user only asks for a priority pass over their links.
+
+public class CleanupScheduler implements Closeable {
+    public static final int DEFAULT_BATCH_SIZE = 20;
+    public static final Duration DEFAULT_BATCH_INTERVAL = Duration.ofSeconds(5);
+    public static final int FAILURES_BEFORE_REMOVAL = 3;
+    private static final Set<Integer> GONE_STATUS_CODES = Set.of(404, 410);
+    private static final long CLOSE_TIMEOUT_SECONDS = 15;
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final Gson GSON = new Gson();
+
+    private final UsersStorage usersStorage;
+    private final LinkProber prober;
+    private final BiConsumer<User, List<Bookmark>> onRemoved; //called once per batch with removals
+    private final String stateFileName; //null when the cursors are kept only in memory
+    private final int batchSize;
+    private final Duration batchInterval;
+    private final ScheduledExecutorService scheduler;
+
+    //guarded by this
+    private final Map<String, String> cursors; //the last checked url of each user's pass
+    private final Set<String> priorityUsers;
+    private final Map<String, CleanupReport> reports;
+    private String currentUser; //whose pass the batches go through, when there is no priority one
+    private boolean isStateDirty;
+    private boolean isStarted;
+
+    private static final class CleanupState {
+        private String currentUser;
+        private Map<String, String> cursors;
+    }
+
+    public CleanupScheduler(UsersStorage usersStorage, LinkProber prober,
+                            BiConsumer<User, List<Bookmark>> onRemoved, String stateFileName) {
+        this(usersStorage, prober, onRemoved, stateFileName, DEFAULT_BATCH_SIZE, DEFAULT_BATCH_INTERVAL);
+    }
+
+    public CleanupScheduler(UsersStorage usersStorage, LinkProber prober,
+                            BiConsumer<User, List<Bookmark>> onRemoved, String stateFileName,
+                            int batchSize, Duration batchInterval) {
+        if (usersStorage == null || prober == null || onRemoved == null) {
+            throw new IllegalArgumentException("Users storage, prober and removal " +
+                    "listener can not be null!");
+        }
+        if (batchSize <= 0 || batchInterval == null || batchInterval.isNegative() || batchInterval.isZero()) {
+            throw new IllegalArgumentException("Batch size and interval must be positive!");
+        }
+        this.usersStorage = usersStorage;
+        this.prober = prober;
+        this.onRemoved = onRemoved;
+        this.stateFileName = stateFileName;
+        this.batchSize = batchSize;
+        this.batchInterval = batchInterval;
+        this.cursors = new HashMap<>();
+        this.priorityUsers = new LinkedHashSet<>();
+        this.reports = new HashMap<>();
+        if (stateFileName != null && Files.exists(Path.of(stateFileName))) {
+            loadState();
+        }
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "links-cleanup");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    //starts running a batch once per interval; the priority passes run without it
+    public synchronized CleanupScheduler start() {
+        if (!isStarted && !scheduler.isShutdown()) {
+            isStarted = true;
+            long intervalNanos = batchInterval.toNanos();
+            scheduler.scheduleWithFixedDelay(this::runBatchSafely, intervalNanos, intervalNanos,
+                    TimeUnit.NANOSECONDS);
+        }
+        return this;
+    }
+
+    //starts a new pass over the user's links ahead of the other users, unless one is
+    //already waiting; its first batch does not wait for the next interval
+    public void requestPriorityPass(String username) {
+        synchronized (this) {
+            if (!priorityUsers.add(username)) {
+                return;
+            }
+            cursors.remove(username);
+            reports.remove(username);
+            isStateDirty = true;
+        }
+        try {
+            scheduler.execute(this::runBatchSafely);
+        } catch (RejectedExecutionException e) {
+            ExceptionsLogger.logClientException(e); //closed, the pass is resumed after a restart
+        }
+    }
+
+    //the progress of the user's latest pass, null if none has run since the start
+    public synchronized CleanupReport getReport(String username) {
+        return reports.get(username);
+    }
+
+    public synchronized boolean isPriorityPassPending(String username) {
+        return priorityUsers.contains(username);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown(); //a running batch is finished, so its removals are not lost
+        try {
+            if (!scheduler.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        saveState();
+    }
+
+    private void runBatchSafely() {
+        try {
+            runBatch();
+        } catch (RuntimeException e) {
+            ExceptionsLogger.logClientException(e); //the next batches must still run
+        }
+    }
+
+    //probes the next batch of the current user's links and removes the dead ones
+    void runBatch() {
+        String username = nextUser();
+        if (username == null) {
+            return;
+        }
+        User user = usersStorage.openSession(username);
+        if (user == null) {
+            finishPass(username); //unregistered meanwhile
+            return;
+        }
+        try {
+            BookmarksGroupStorage storage = user.getStorage();
+            NavigableSet<String> urls = new TreeSet<>(storage.getUrls());
+            String cursor = getCursor(username);
+            NavigableSet<String> remaining = cursor == null ? urls : urls.tailSet(cursor, false);
+            List<String> batch = new ArrayList<>(batchSize);
+            for (String url : remaining) {
+                if (batch.size() == batchSize) {
+                    break;
+                }
+                batch.add(url);
+            }
+
+            Set<String> invalidUrls = new TreeSet<>();
+            prober.probeAll(batch).forEach((url, statusCode) -> {
+                if (isDead(url, statusCode)) {
+                    invalidUrls.add(url);
+                }
+            });
+            List<Bookmark> removed = storage.removeBookmarksByUrl(invalidUrls);
+            if (!removed.isEmpty()) {
+                onRemoved.accept(user, removed);
+            }
+
+            String lastChecked = batch.isEmpty() ? cursor : batch.getLast();
+            int checkedLinks = lastChecked == null ? 0 : urls.headSet(lastChecked, true).size();
+            boolean isFinished = batch.size() < batchSize || remaining.size() == batch.size();
+            updateReport(username, checkedLinks, urls.size(), removed, isFinished);
+            if (isFinished) {
+                finishPass(username);
+            } else {
+                advanceCursor(username, lastChecked);
+            }
+        } finally {
+            usersStorage.closeSession(username);
+            saveState();
+        }
+    }
+
+    //a failed probe (an unknown host, a timeout, an interrupt) tells nothing on its own
+    private boolean isDead(String url, int statusCode) {
+        if (LinkProber.isValid(statusCode)) {
+            return false;
+        }
+        if (GONE_STATUS_CODES.contains(statusCode)) {
+            return true;
+        }
+        LinkHealthCache healthCache = prober.getHealthCache();
+        return healthCache != null && healthCache.getFailuresCount(url) >= FAILURES_BEFORE_REMOVAL;
+    }
+
+    private synchronized String nextUser() {
+        if (!priorityUsers.isEmpty()) {
+            return priorityUsers.iterator().next();
+        }
+        NavigableSet<String> usernames = usersStorage.getRegisteredUsernames();
+        if (usernames.isEmpty()) {
+            return null;
+        }
+        if (currentUser == null || !usernames.contains(currentUser)) {
+            String next = currentUser == null ? null : usernames.higher(currentUser);
+            currentUser = next == null ? usernames.first() : next;
+            isStateDirty = true;
+        }
+        return currentUser;
+    }
+
+    private synchronized String getCursor(String username) {
+        return cursors.get(username);
+    }
+
+    private synchronized void advanceCursor(String username, String lastChecked) {
+        cursors.put(username, lastChecked);
+        isStateDirty = true;
+    }
+
+    private synchronized void updateReport(String username, int checkedLinks, int totalLinks,
+                                           List<Bookmark> removed, boolean isFinished) {
+        CleanupReport previous = reports.get(username);
+        List<Bookmark> removedInPass = new ArrayList<>();
+        if (previous != null && !previous.isFinished()) {
+            removedInPass.addAll(previous.removedBookmarks());
+        }
+        removedInPass.addAll(removed);
+        reports.put(username, new CleanupReport(checkedLinks, totalLinks, List.copyOf(removedInPass),
+                isFinished));
+    }
+
+    //the next pass over the user's links starts from the beginning; a round-robin pass
+    //moves on to the next user
+    private void finishPass(String username) {
+        synchronized (this) {
+            cursors.remove(username);
+            if (!priorityUsers.remove(username) && username.equals(currentUser)) {
+                currentUser = usersStorage.getRegisteredUsernames().higher(username);
+            }
+            isStateDirty = true;
+        }
+        LinkHealthCache healthCache = prober.getHealthCache();
+        if (healthCache != null) {
+            healthCache.save(); //a crash loses at most the health of one user's links
+        }
+    }
+
+    private synchronized void saveState() {
+        if (stateFileName == null || !isStateDirty) {
+            return;
+        }
+        CleanupState state = new CleanupState();
+        state.currentUser = currentUser;
+        state.cursors = new HashMap<>(cursors);
+
+        Path file = Path.of(stateFileName);
+        Path tmpFile = Path.of(stateFileName + TMP_SUFFIX);
+        try (BufferedWriter writer = Files.newBufferedWriter(tmpFile)) {
+            GSON.toJson(state, writer);
+        } catch (IOException e) {
+            ExceptionsLogger.logClientException(e);
+            return;
+        }
+        try {
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            isStateDirty = false;
+        } catch (IOException e) {
+            ExceptionsLogger.logClientException(e);
+        }
+    }
+
+    private void loadState() {
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(stateFileName))) {
+            CleanupState state = GSON.fromJson(reader, CleanupState.class);
+            if (state == null) {
+                return;
+            }
+            currentUser = state.currentUser;
+            if (state.cursors != null) {
+                cursors.putAll(state.cursors);
+            }
+        } catch (IOException | JsonParseException e) {
+            ExceptionsLogger.logClientException(e); //the cleanup starts over
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.Bookmark;
+
+import java.util.List;
+
+//What an import has changed in one user's storage: the bookmarks added and the
+//previous versions of the bookmarks changed since the last import, which were removed.
+
+public record ImportReport(List<Bookmark> imported, List<Bookmark> removed) {
+}
@@ -0,0 +1,203 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.user.User;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Group commit of the users' data: the commands only mark what they have changed
+//as dirty and a background thread writes it once per durability window (or as
+//soon as enough operations have piled up), so many mutations cost one write
+//per storage and per user.
+
+public class PersistenceScheduler implements Closeable {
+    public static final Duration DEFAULT_DURABILITY_WINDOW = Duration.ofSeconds(1);
+    public static final int DEFAULT_MAX_PENDING_OPERATIONS = 256;
+
+    private final UsersStorage usersStorage;
+    private final Duration durabilityWindow;
+    private final int maxPendingOperations;
+    private final ScheduledExecutorService scheduler;
+
+    //keyed by file/user name since a storage's hash code changes with its groups
+    private final Map<String, BookmarksGroupStorage> dirtyStorages;
+    private final Map<String, User> dirtyUsers;
+    private final AtomicInteger pendingOperations;
+    private final AtomicBoolean isFlushRequested;
+    private final AtomicLong requestedWrites; //writes the commands would have done on their own
+    private final AtomicLong performedWrites;
+    private volatile boolean isClosed;
+    private boolean isStarted; //guarded by this
+
+    public PersistenceScheduler(UsersStorage usersStorage) {
+        this(usersStorage, DEFAULT_DURABILITY_WINDOW, DEFAULT_MAX_PENDING_OPERATIONS);
+    }
+
+    public PersistenceScheduler(UsersStorage usersStorage, Duration durabilityWindow,
+                                int maxPendingOperations) {
+        if (durabilityWindow == null || durabilityWindow.isNegative() || durabilityWindow.isZero()
+                || maxPendingOperations <= 0) {
+            throw new IllegalArgumentException("Durability window and max pending " +
+                    "operations must be positive!");
+        }
+        this.usersStorage = usersStorage;
+        this.durabilityWindow = durabilityWindow;
+        this.maxPendingOperations = maxPendingOperations;
+        this.dirtyStorages = new ConcurrentHashMap<>();
+        this.dirtyUsers = new ConcurrentHashMap<>();
+        this.pendingOperations = new AtomicInteger();
+        this.isFlushRequested = new AtomicBoolean();
+        this.requestedWrites = new AtomicLong();
+        this.performedWrites = new AtomicLong();
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "persistence-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    //starts the flush once per durability window; until then only the piled up
+    //operations and close() write the dirty data
+    public synchronized PersistenceScheduler start() {
+        if (!isStarted && !isClosed) {
+            isStarted = true;
+            long windowNanos = durabilityWindow.toNanos();
+            scheduler.scheduleWithFixedDelay(this::flushAndEvict, windowNanos, windowNanos,
+                    TimeUnit.NANOSECONDS);
+        }
+        return this;
+    }
+
+    public void markDirty(BookmarksGroupStorage storage) {
+        if (storage != null) {
+            dirtyStorages.put(storage.getFileName(), storage);
+            operationAdded();
+        }
+    }
+
+    public void markDirty(User user) {
+        if (user != null) {
+            dirtyUsers.put(user.getUsername(), user);
+            operationAdded();
+        }
+    }
+
+    //writes everything that is dirty at the moment; called by the scheduler thread
+    //and on close, so that nothing marked before a shutdown is lost
+    public synchronized void flushAll() {
+        isFlushRequested.set(false);
+        pendingOperations.set(0);
+
+        for (String fileName : dirtyStorages.keySet()) {
+            BookmarksGroupStorage storage = dirtyStorages.remove(fileName);
+            try {
+                storage.flush();
+                performedWrites.incrementAndGet();
+            } catch (RuntimeException e) {
+                ExceptionsLogger.logClientException(e);
+                dirtyStorages.putIfAbsent(fileName, storage); //retried by the next flush
+            }
+        }
+
+        List<User> users = new ArrayList<>();
+        for (String username : dirtyUsers.keySet()) {
+            users.add(dirtyUsers.remove(username));
+        }
+        if (!users.isEmpty()) {
+            try {
+                usersStorage.saveUsers(users);
+                performedWrites.addAndGet(users.size());
+            } catch (IllegalStateException e) {
+                ExceptionsLogger.logClientException(e);
+                users.forEach(user -> dirtyUsers.putIfAbsent(user.getUsername(), user));
+            }
+        }
+    }
+
+    //the users' data is evicted only after it has been written
+    private void flushAndEvict() {
+        flushAll();
+        syncIdleLogs();
+        try {
+            usersStorage.evictUsers();
+        } catch (RuntimeException e) {
+            ExceptionsLogger.logClientException(e);
+        }
+    }
+
+    //the grouped and periodic fsync policies sync only on append, so the last records
+    //of a log that no command has touched since are synced here
+    private void syncIdleLogs() {
+        for (User user : usersStorage.getUsers().values()) {
+            try {
+                if (user.getStorage() != null) {
+                    user.getStorage().syncLog();
+                }
+            } catch (RuntimeException e) {
+                ExceptionsLogger.logClientException(e);
+            }
+        }
+    }
+
+    public Duration getDurabilityWindow() {
+        return durabilityWindow;
+    }
+
+    public long getRequestedWrites() {
+        return requestedWrites.get();
+    }
+
+    public long getPerformedWrites() {
+        return performedWrites.get();
+    }
+
+    //how many writes have been saved by coalescing the mutations
+    public long getCoalescedWrites() {
+        return Math.max(0, requestedWrites.get() - performedWrites.get()
+                - dirtyStorages.size() - dirtyUsers.size());
+    }
+
+    public int getDirtyCount() {
+        return dirtyStorages.size() + dirtyUsers.size();
+    }
+
+    @Override
+    public void close() {
+        if (isClosed) {
+            return;
+        }
+        isClosed = true;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(durabilityWindow.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushAll();
+    }
+
+    private void operationAdded() {
+        requestedWrites.incrementAndGet();
+        if (pendingOperations.incrementAndGet() >= maxPendingOperations && !isClosed
+                && isFlushRequested.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(this::flushAll);
+            } catch (RejectedExecutionException e) {
+                isFlushRequested.set(false); //closed meanwhile, close() flushes everything
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage;
+
+import java.time.Duration;
+
+//Snapshot of how many users' data is kept in memory and how long loading it takes
+
+public record ResidentUsersStats(int residentUsers, long evictedUsers, long loadedUsers,
+                                 long estimatedResidentBytes, Duration averageLoadLatency,
+                                 Duration maxLoadLatency) {
+}
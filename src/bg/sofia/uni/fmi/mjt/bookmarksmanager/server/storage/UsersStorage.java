@@ -1,51 +1,113 @@
 package bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage;
 
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.BookmarksManagerAPI;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.BookmarksGroup;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.UserAlreadyExistsException;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.user.User;
+import java.io.ByteArrayInputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 public class UsersStorage {
-    //keeps registered users
+    //keeps registered users: the users file is only an index of the usernames and
+    //every user is saved in a record file of its own, so that saving one user does
+    //not rewrite the others and the startup reads just the index.
+    //A user's data is loaded when they log in and, once they are not logged in,
+    //it is evicted (least recently used first) after being idle for too long or
+    //when the resident users exceed the heap budget.
     private static final int MIN_PASSWORD_LENGTH = 5;
     private static final String PASSWORD_REGEX =
             "^(?=.*[A-Z])(?=.*[a-z])(?=.*\\d).+$";
+    private static final String RECORDS_DIRECTORY_SUFFIX = "-records";
+    private static final String RECORD_SUFFIX = ".user";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final byte[] SERIALIZATION_MAGIC = {(byte) 0xAC, (byte) 0xED};
+    private static final int ESTIMATED_BOOKMARK_BYTES = 1024;
+    public static final Duration DEFAULT_MAX_IDLE_TIME = Duration.ofMinutes(10);
+    public static final long DEFAULT_RESIDENT_BYTES_BUDGET = 256L * 1024 * 1024;
 
     private final String fileName;
-    private final Map<String, User> users;
+    private final Path recordsDirectory;
+    private final Set<String> registeredUsernames;
+    private final Set<String> indexedUsernames; //the ones already appended to the index file
+    private final Map<String, User> users; //users whose records have been loaded
+
+    private final Duration maxIdleTime;
+    private final long residentBytesBudget;
+    private final LinkedHashMap<String, Long> lastAccessNanos; //access ordered - the LRU first
+    private final Map<String, Integer> sessions; //logged in users are never evicted
+    private final List<Consumer<String>> evictionListeners;
+    private final AtomicLong evictedUsers;
+    private final AtomicLong loadedUsers;
+    private final AtomicLong totalLoadNanos;
+    private final AtomicLong maxLoadNanos;
 
     public UsersStorage(String fileName) {
-        this.users = new HashMap<>();
-        this.fileName = fileName;
-        try {
-            initializeUsersDatabase(fileName);
-        } catch (IllegalStateException e) {
-            ExceptionsLogger.logClientException(e);
-        }
+        this(new ConcurrentHashMap<>(), fileName);
     }
 
     public UsersStorage(Map<String, User> users, String fileName) {
+        this(users, fileName, DEFAULT_MAX_IDLE_TIME, DEFAULT_RESIDENT_BYTES_BUDGET);
+    }
+
+    public UsersStorage(Map<String, User> users, String fileName,
+                        Duration maxIdleTime, long residentBytesBudget) {
+        if (maxIdleTime == null || maxIdleTime.isNegative() || residentBytesBudget < 0) {
+            throw new IllegalArgumentException("Idle time and heap budget can not be negative!");
+        }
         this.users = users;
         this.fileName = fileName;
+        this.recordsDirectory = Path.of(fileName + RECORDS_DIRECTORY_SUFFIX);
+        this.registeredUsernames = ConcurrentHashMap.newKeySet();
+        this.indexedUsernames = ConcurrentHashMap.newKeySet();
+        this.maxIdleTime = maxIdleTime;
+        this.residentBytesBudget = residentBytesBudget;
+        this.lastAccessNanos = new LinkedHashMap<>(16, 0.75f, true);
+        this.sessions = new HashMap<>();
+        this.evictionListeners = new CopyOnWriteArrayList<>();
+        this.evictedUsers = new AtomicLong();
+        this.loadedUsers = new AtomicLong();
+        this.totalLoadNanos = new AtomicLong();
+        this.maxLoadNanos = new AtomicLong();
+        registeredUsernames.addAll(users.keySet());
+        users.keySet().forEach(this::touch);
         try {
             initializeUsersDatabase(fileName);
         } catch (IllegalStateException e) {
+            //the server does not start without its users, rather than register them anew
             ExceptionsLogger.logClientException(e);
+            throw e;
         }
     }
 
 
-    public String register(String username, String password) {
+    public synchronized String register(String username, String password) {
         if (username == null || username.isEmpty() ||
                 username.isBlank()) {
             ExceptionsLogger.logClientException(new IllegalArgumentException(String.
@@ -68,13 +130,99 @@ public class UsersStorage {
         User registeredUser = new User(username, password,
                 new BookmarksGroupStorage(BookmarksManagerAPI.GROUP_FILE_PATH + username));
         users.put(username, registeredUser);
+        registeredUsernames.add(username);
+        touch(username);
         return String.format("User %s has been successfully registered.", username);
     }
 
     public boolean isARegisteredUser(String username) {
-       return users.containsKey(username);
+       return username != null && (registeredUsernames.contains(username) || users.containsKey(username));
     }
 
+    //the names of all the registered users, resident or not, in alphabetical order
+    public NavigableSet<String> getRegisteredUsernames() {
+        NavigableSet<String> usernames = new TreeSet<>(registeredUsernames);
+        usernames.addAll(users.keySet());
+        return usernames;
+    }
+
+    //the registered user with this name, its record is read if it is not resident;
+    //synchronized with the eviction so that a user is not handed out while being closed
+    public synchronized User getUser(String username) {
+        if (!isARegisteredUser(username)) {
+            return null;
+        }
+        User user = users.computeIfAbsent(username, this::loadUserRecord);
+        if (user != null) {
+            touch(username);
+        }
+        return user;
+    }
+
+    //keeps the user resident until all of their sessions have ended
+    public synchronized User openSession(String username) {
+        User user = getUser(username);
+        if (user != null) {
+            sessions.merge(username, 1, Integer::sum);
+        }
+        return user;
+    }
+
+    public synchronized void closeSession(String username) {
+        sessions.computeIfPresent(username, (name, count) -> count > 1 ? count - 1 : null);
+        touch(username);
+    }
+
+    //evicts the users without sessions that have been idle for too long and then,
+    //least recently used first, as many as needed to fit in the heap budget
+    public synchronized int evictUsers() {
+        long now = System.nanoTime();
+        long residentBytes = estimateResidentBytes();
+        List<User> candidates = new ArrayList<>();
+
+        //a failed eviction touches the user again, so the access order is not
+        //changed until the candidates have been picked
+        Iterator<Map.Entry<String, Long>> lruIterator = lastAccessNanos.entrySet().iterator();
+        while (lruIterator.hasNext()) {
+            Map.Entry<String, Long> entry = lruIterator.next();
+            String username = entry.getKey();
+            if (sessions.containsKey(username)) {
+                continue;
+            }
+            boolean isIdle = now - entry.getValue() >= maxIdleTime.toNanos();
+            if (!isIdle && residentBytes <= residentBytesBudget) {
+                break; //the rest have been used more recently
+            }
+            lruIterator.remove();
+            User user = users.get(username);
+            if (user != null) {
+                residentBytes -= estimateBytes(user);
+                candidates.add(user);
+            }
+        }
+
+        int evicted = 0;
+        for (User user : candidates) {
+            if (evict(user)) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    public void addEvictionListener(Consumer<String> listener) {
+        evictionListeners.add(listener);
+    }
+
+    public synchronized ResidentUsersStats getResidentUsersStats() {
+        long loads = loadedUsers.get();
+        return new ResidentUsersStats(users.size(), evictedUsers.get(), loads,
+                estimateResidentBytes(),
+                Duration.ofNanos(loads == 0 ? 0 : totalLoadNanos.get() / loads),
+                Duration.ofNanos(maxLoadNanos.get()));
+    }
+
+    //the users that have been loaded so far
     public Map<String, User> getUsers() {
         return users;
     }
@@ -83,17 +231,24 @@ public class UsersStorage {
         users.replace(username, user);
     }
 
-    public void saveUsers() {
-        Path filePath = Paths.get(fileName);
-        if (!Files.exists(filePath)) {
-            FileCreator.createFile(fileName);
-        }
+    //saves every loaded user
+    public synchronized void saveUsers() {
+        saveUsers(users.values());
+    }
 
-        try (var objectOutputStream = new ObjectOutputStream(Files.newOutputStream(filePath))) {
-            for (User u : users.values()) {
-                objectOutputStream.writeObject(u);
-                objectOutputStream.flush();
+    //saves only the records of the given users
+    public synchronized void saveUsers(Collection<User> changedUsers) {
+        try {
+            Files.createDirectories(recordsDirectory);
+            List<String> newUsernames = new ArrayList<>();
+            for (User user : changedUsers) {
+                writeUserRecord(user);
+                registeredUsernames.add(user.getUsername());
+                if (indexedUsernames.add(user.getUsername())) {
+                    newUsernames.add(user.getUsername());
+                }
             }
+            appendToIndex(newUsernames);
         } catch (IOException e) {
             throw new IllegalStateException("Could not save users to database!", e);
         }
@@ -108,16 +263,18 @@ public class UsersStorage {
         }
     }
 
+    //reads the index only, the records are loaded by getUser
     public void readUsers() {
         Path filePath = Paths.get(fileName);
-
-        try (var objectInputStream = new ObjectInputStream(Files.newInputStream(filePath))) {
-            while (true) {
-                try {
-                    User currentUser = (User) objectInputStream.readObject();
-                    users.put(currentUser.getUsername(), currentUser);
-                } catch (EOFException e) {
-                    break;
+        try {
+            if (isLegacyUsersFile(filePath)) {
+                migrateLegacyUsersFile(filePath);
+                return;
+            }
+            for (String username : Files.readAllLines(filePath, StandardCharsets.UTF_8)) {
+                if (!username.isBlank()) {
+                    registeredUsernames.add(username);
+                    indexedUsernames.add(username);
                 }
             }
         } catch (IOException | ClassNotFoundException e) {
@@ -151,6 +308,148 @@ public class UsersStorage {
         return Objects.hash(users);
     }
 
+    private Path recordPath(String username) {
+        return recordsDirectory.resolve(username + RECORD_SUFFIX);
+    }
+
+    private synchronized void touch(String username) {
+        lastAccessNanos.put(username, System.nanoTime());
+    }
+
+    private User loadUserRecord(String username) {
+        long start = System.nanoTime();
+        User user = readUserRecord(username);
+        if (user != null) {
+            long loadNanos = System.nanoTime() - start;
+            loadedUsers.incrementAndGet();
+            totalLoadNanos.addAndGet(loadNanos);
+            maxLoadNanos.accumulateAndGet(loadNanos, Math::max);
+        }
+        return user;
+    }
+
+    private boolean evict(User user) {
+        try {
+            if (!indexedUsernames.contains(user.getUsername())) {
+                saveUsers(List.of(user)); //registered but not saved yet
+            }
+            user.getStorage().close();
+        } catch (IllegalStateException e) {
+            ExceptionsLogger.logClientException(e);
+            touch(user.getUsername()); //stays resident, eviction is retried later
+            return false;
+        }
+        users.remove(user.getUsername());
+        evictedUsers.incrementAndGet();
+        evictionListeners.forEach(listener -> listener.accept(user.getUsername()));
+        return true;
+    }
+
+    private long estimateResidentBytes() {
+        return users.values().stream().mapToLong(UsersStorage::estimateBytes).sum();
+    }
+
+    private static long estimateBytes(User user) {
+        return user.getStorage() == null ? 0 :
+                (long) user.getStorage().getBookmarksCount() * ESTIMATED_BOOKMARK_BYTES;
+    }
+
+    private User readUserRecord(String username) {
+        try (var objectInputStream = new ObjectInputStream(Files.newInputStream(recordPath(username)))) {
+            return (User) objectInputStream.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            ExceptionsLogger.logClientException(e);
+            return null;
+        }
+    }
+
+    private void writeUserRecord(User user) throws IOException {
+        Path record = recordPath(user.getUsername());
+        Path tmpRecord = Path.of(record + TMP_SUFFIX);
+        try (var objectOutputStream = new ObjectOutputStream(Files.newOutputStream(tmpRecord))) {
+            objectOutputStream.writeObject(user);
+        }
+        Files.move(tmpRecord, record, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void appendToIndex(List<String> usernames) throws IOException {
+        if (usernames.isEmpty()) {
+            return;
+        }
+        StringBuilder lines = new StringBuilder();
+        for (String username : usernames) {
+            lines.append(username).append(System.lineSeparator());
+        }
+        Files.writeString(Path.of(fileName), lines, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    //the users file used to be one stream of all serialized users
+    private boolean isLegacyUsersFile(Path filePath) throws IOException {
+        try (InputStream input = Files.newInputStream(filePath)) {
+            byte[] header = input.readNBytes(SERIALIZATION_MAGIC.length);
+            return header.length == SERIALIZATION_MAGIC.length &&
+                    header[0] == SERIALIZATION_MAGIC[0] && header[1] == SERIALIZATION_MAGIC[1];
+        }
+    }
+
+    private void migrateLegacyUsersFile(Path filePath) throws IOException, ClassNotFoundException {
+        List<User> legacyUsers = new ArrayList<>();
+        //the old file held every user in memory as well, so it is read at once in order to
+        //tell the end of the last user from a user that was cut off while being written
+        var fileStream = new ByteArrayInputStream(Files.readAllBytes(filePath));
+        try (var objectInputStream = new ObjectInputStream(fileStream)) {
+            int bytesLeft = fileStream.available();
+            while (true) {
+                try {
+                    legacyUsers.add((User) objectInputStream.readObject());
+                    bytesLeft = fileStream.available();
+                } catch (EOFException e) {
+                    if (bytesLeft > 0) {
+                        throw new IOException("The users file ends in the middle of a user", e);
+                    }
+                    break;
+                }
+            }
+        }
+        //the records are written before the index replaces the old file
+        Files.createDirectories(recordsDirectory);
+        StringBuilder index = new StringBuilder();
+        for (User legacyUser : legacyUsers) {
+            User user = withGroupsFile(legacyUser);
+            writeUserRecord(user);
+            users.put(user.getUsername(), user);
+            registeredUsernames.add(user.getUsername());
+            indexedUsernames.add(user.getUsername());
+            index.append(user.getUsername()).append(System.lineSeparator());
+        }
+        Path tmpIndex = Path.of(fileName + TMP_SUFFIX);
+        Files.writeString(tmpIndex, index, StandardCharsets.UTF_8);
+        Files.move(tmpIndex, filePath, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    //the first version did not save the storage's file name along with the groups; its
+    //file is the one register gives the user, whose groups are kept if it has any
+    private static User withGroupsFile(User legacyUser) {
+        BookmarksGroupStorage legacyStorage = legacyUser.getStorage();
+        if (legacyStorage != null && legacyStorage.getFileName() != null) {
+            return legacyUser;
+        }
+        BookmarksGroupStorage storage = new BookmarksGroupStorage(BookmarksManagerAPI.GROUP_FILE_PATH
+                + legacyUser.getUsername());
+        if (storage.getGroups().isEmpty() && legacyStorage != null && legacyStorage.getGroups() != null) {
+            for (BookmarksGroup group : legacyStorage.getGroups().values()) {
+                storage.createNewGroup(group.getGroupName());
+                group.getBookmarks().forEach(bookmark ->
+                        storage.addNewBookmarkToGroup(bookmark, group.getGroupName()));
+            }
+            storage.updateGroupsFile();
+        }
+        return legacyUser.withStorage(storage);
+    }
+
     private boolean validatePassword(String password) {
         return password != null && !password.isBlank() &&
                 password.length() >= MIN_PASSWORD_LENGTH
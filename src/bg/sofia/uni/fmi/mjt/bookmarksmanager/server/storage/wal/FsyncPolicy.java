@@ -0,0 +1,7 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage.wal;
+
+public enum FsyncPolicy {
+    PER_OPERATION, //every record is forced to disk before the mutation returns
+    GROUPED,       //one fsync per WriteAheadLog.GROUP_COMMIT_SIZE records
+    PERIODIC       //one fsync at most every WriteAheadLog.SYNC_INTERVAL
+}
@@ -0,0 +1,27 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage.wal;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.Bookmark;
+
+//One mutation of a user's groups as it is appended to the log. Fields that
+//do not apply to the record's type stay null and are not written at all.
+
+public record WalRecord(Type type, String groupName, Bookmark bookmark, String bookmarkTitle) {
+
+    public enum Type {
+        CREATE_GROUP,
+        ADD_BOOKMARK,
+        REMOVE_BOOKMARK
+    }
+
+    public static WalRecord createGroup(String groupName) {
+        return new WalRecord(Type.CREATE_GROUP, groupName, null, null);
+    }
+
+    public static WalRecord addBookmark(String groupName, Bookmark bookmark) {
+        return new WalRecord(Type.ADD_BOOKMARK, groupName, bookmark, null);
+    }
+
+    public static WalRecord removeBookmark(String groupName, String bookmarkTitle) {
+        return new WalRecord(Type.REMOVE_BOOKMARK, groupName, null, bookmarkTitle);
+    }
+}
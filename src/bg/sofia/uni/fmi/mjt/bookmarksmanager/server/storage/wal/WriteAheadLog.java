@@ -0,0 +1,177 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage.wal;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+//Append-only log of WalRecords, one compact JSON record per line. The owner
+//replays it on top of its last snapshot and truncates it after a new snapshot
+//(compaction) has been written.
+
+public class WriteAheadLog implements Closeable {
+    public static final int GROUP_COMMIT_SIZE = 32;
+    public static final Duration SYNC_INTERVAL = Duration.ofSeconds(1);
+
+    private static final Gson GSON = new Gson();
+    private static final byte NEW_LINE = '\n';
+
+    private final Path path;
+    private final FsyncPolicy fsyncPolicy;
+    private final FileChannel channel;
+    private int recordsCount; //records written since the last truncate
+    private int unsyncedRecords;
+    private long lastSyncNanos;
+
+    public WriteAheadLog(Path path, FsyncPolicy fsyncPolicy) throws IOException {
+        if (path == null || fsyncPolicy == null) {
+            throw new IllegalArgumentException("Log's path and fsync policy can not be null!");
+        }
+        this.path = path;
+        this.fsyncPolicy = fsyncPolicy;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.lastSyncNanos = System.nanoTime();
+    }
+
+    //only the last line can be torn (a crash in the middle of an append): it has no
+    //new line, it is not replayed and it is cut off, so that the next append does not
+    //continue it. A complete line that can not be read is logged and skipped, the
+    //records after it are still replayed
+    public synchronized int replay(Consumer<WalRecord> consumer) throws IOException {
+        int replayed = 0;
+        long completeBytes = 0; //up to the end of the last line with its new line
+        if (Files.exists(path)) {
+            try (var input = new BufferedInputStream(Files.newInputStream(path))) {
+                ByteArrayOutputStream line = new ByteArrayOutputStream();
+                int b;
+                while ((b = input.read()) != -1) {
+                    if (b != NEW_LINE) {
+                        line.write(b);
+                        continue;
+                    }
+                    String json = line.toString(StandardCharsets.UTF_8);
+                    WalRecord record = parse(json);
+                    if (record != null) {
+                        consumer.accept(record);
+                        replayed++;
+                    } else if (!json.isBlank()) {
+                        ExceptionsLogger.logClientException(new IOException(String.format(
+                                "Skipped an unreadable record at byte %d of log %s", completeBytes, path)));
+                    }
+                    completeBytes += line.size() + 1;
+                    line.reset();
+                }
+            }
+            if (channel.size() > completeBytes) {
+                channel.truncate(completeBytes);
+                channel.force(true);
+            }
+        }
+        recordsCount = replayed;
+        return replayed;
+    }
+
+    public synchronized void append(WalRecord record) throws IOException {
+        byte[] json = GSON.toJson(record).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer line = ByteBuffer.allocate(json.length + 1).put(json).put(NEW_LINE).flip();
+        while (line.hasRemaining()) {
+            channel.write(line);
+        }
+        recordsCount++;
+        unsyncedRecords++;
+        if (shouldSync()) {
+            sync();
+        }
+    }
+
+    //the records are written together and synced at most once, as one operation
+    public synchronized void appendAll(List<WalRecord> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        for (WalRecord record : records) {
+            lines.writeBytes(GSON.toJson(record).getBytes(StandardCharsets.UTF_8));
+            lines.write(NEW_LINE);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        recordsCount += records.size();
+        unsyncedRecords += records.size();
+        if (shouldSync()) {
+            sync();
+        }
+    }
+
+    public synchronized void sync() throws IOException {
+        if (unsyncedRecords == 0) {
+            return;
+        }
+        channel.force(false);
+        unsyncedRecords = 0;
+        lastSyncNanos = System.nanoTime();
+    }
+
+    //syncs the records appended long enough ago that their policy would have synced
+    //them by now, had more appends come; called for the logs that have gone idle
+    public synchronized void syncIfDue() throws IOException {
+        if (unsyncedRecords > 0 && System.nanoTime() - lastSyncNanos >= SYNC_INTERVAL.toNanos()) {
+            sync();
+        }
+    }
+
+    public synchronized void truncate() throws IOException {
+        channel.truncate(0);
+        channel.force(true);
+        recordsCount = 0;
+        unsyncedRecords = 0;
+        lastSyncNanos = System.nanoTime();
+    }
+
+    public synchronized int getRecordsCount() {
+        return recordsCount;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        sync();
+        channel.close();
+    }
+
+    private static WalRecord parse(String line) {
+        try {
+            WalRecord record = GSON.fromJson(line, WalRecord.class);
+            return record == null || record.type() == null ? null : record;
+        } catch (JsonParseException e) {
+            return null;
+        }
+    }
+
+    private boolean shouldSync() {
+        return switch (fsyncPolicy) {
+            case PER_OPERATION -> true;
+            case GROUPED -> unsyncedRecords >= GROUP_COMMIT_SIZE;
+            case PERIODIC -> System.nanoTime() - lastSyncNanos >= SYNC_INTERVAL.toNanos();
+        };
+    }
+}
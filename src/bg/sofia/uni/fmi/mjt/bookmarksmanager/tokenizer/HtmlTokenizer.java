@@ -1,22 +1,27 @@
 package bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer;
 
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.fetch.FetchedPage;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.fetch.PageFetcher;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer.algorithm.RegularPluralFormAlgorithm;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer.algorithm.SuffixStrippingAlgorithm;
-import org.jsoup.Jsoup;
+import org.jsoup.HttpStatusException;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
-import java.util.Arrays;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 public class HtmlTokenizer {
@@ -24,101 +29,221 @@ public class HtmlTokenizer {
     private static final String DEFAULT_STOPWORDS_FILE = "src" +
             File.separator + "stopwords.txt";
     private static final int MAX_KEYWORDS_NUMBER = 15;
-    private static final String CSS_QUERY = "p, h1, h2, h3, h4, h5, h6, li, div";
-    private static final RegularPluralFormAlgorithm pluralStemmer =
-            new RegularPluralFormAlgorithm();
-    private static final SuffixStrippingAlgorithm suffixStemmer =
-            new SuffixStrippingAlgorithm();
+    private static final Set<String> TEXT_ELEMENTS = Set.of("p", "h1", "h2", "h3", "h4", "h5", "h6", "li", "div");
+    private static final String LINE_BREAK_ELEMENT = "br";
+    private static final String DESCRIPTION_CSS_QUERY = "meta[name=description]";
+    //shared by all the tokenizers, the stems do not depend on the stopwords
+    private static final StemCache STEM_CACHE = new StemCache(List.of(new RegularPluralFormAlgorithm(),
+            new SuffixStrippingAlgorithm()));
+
+    //the tokenizer holds no state besides the stopwords, the thread-safe page cache and
+    //fetcher, so one instance is shared by all the threads
+    private final StopwordsTrie stopwords;
+    private final PageMetadataCache pageCache; //null when every page is downloaded
+    private final PageFetcher fetcher;
+
+    private static final class DefaultTokenizerHolder {
+        private static final HtmlTokenizer INSTANCE = new HtmlTokenizer(new PageMetadataCache());
+    }
 
-    private final Set<String> stopwords;
+    public HtmlTokenizer() {
+        this((PageMetadataCache) null);
+    }
 
+    public HtmlTokenizer(PageMetadataCache pageCache) {
+        this(pageCache, PageFetcher.getDefault());
+    }
 
-    public HtmlTokenizer() {
+    public HtmlTokenizer(PageMetadataCache pageCache, PageFetcher fetcher) {
+        if (fetcher == null) {
+            throw new IllegalArgumentException("Page fetcher must not be null!");
+        }
         try (var br = new BufferedReader(new FileReader(DEFAULT_STOPWORDS_FILE))) {
-            stopwords = br.lines().collect(Collectors.toSet());
+            stopwords = new StopwordsTrie(br.lines().toList());
         } catch (IOException ex) {
             throw new IllegalArgumentException("Could not load dataset", ex);
         }
+        this.pageCache = pageCache;
+        this.fetcher = fetcher;
     }
 
     public HtmlTokenizer(Reader stopwordsReader) {
         try (var br = new BufferedReader(stopwordsReader)) {
-            stopwords = br.lines().collect(Collectors.toSet());
+            stopwords = new StopwordsTrie(br.lines().toList());
         } catch (IOException ex) {
             throw new IllegalArgumentException("Could not load dataset", ex);
         }
+        this.pageCache = null;
+        this.fetcher = PageFetcher.getDefault();
     }
 
     public HtmlTokenizer(Set<String> stopwords) {  //I used this constructor mainly for testing purposes
+        this(stopwords, null);
+    }
+
+    public HtmlTokenizer(Set<String> stopwords, PageMetadataCache pageCache) {
+        this(stopwords, pageCache, PageFetcher.getDefault());
+    }
+
+    public HtmlTokenizer(Set<String> stopwords, PageMetadataCache pageCache, PageFetcher fetcher) {
         if (stopwords == null || stopwords.isEmpty()) {
             throw new IllegalArgumentException("Initialization set " +
                     "of stop words must not be null or empty!");
         }
-        this.stopwords = stopwords;
+        if (fetcher == null) {
+            throw new IllegalArgumentException("Page fetcher must not be null!");
+        }
+        this.stopwords = new StopwordsTrie(stopwords);
+        this.pageCache = pageCache;
+        this.fetcher = fetcher;
     }
 
-    public String getTitle(String url) {
+    //the tokenizer with the default stopwords and a page cache kept in memory, loaded once on first use
+    public static HtmlTokenizer getDefault() {
+        return DefaultTokenizerHolder.INSTANCE;
+    }
+
+    //fetches and parses the page once for its title, keywords and metadata; with a page
+    //cache a fresh page is not fetched and a stale one only if it has changed
+    public PageAnalysis analyze(String url) {
         try {
-            Document doc = Jsoup.connect(url).get();
-            return doc.title().strip().replaceAll(" +", "-");
+            if (pageCache == null) {
+                return analyze(fetchPage(url).parse());
+            }
+            PageMetadata cached = pageCache.get(url);
+            if (cached != null && pageCache.isFresh(cached)) {
+                return cached.toAnalysis();
+            }
+            return fetchAndCache(url, cached);
         } catch (IOException e) {
             ExceptionsLogger.logClientException(e);
         }
-        return null;
+        return PageAnalysis.failed(url);
     }
 
-    public Set<String> getKeywords(String url) {
+    public PageMetadataCache getPageCache() {
+        return pageCache;
+    }
+
+    public PageFetcher getFetcher() {
+        return fetcher;
+    }
+
+    public PageAnalysis analyze(Document doc) {
+        String description = doc.select(DESCRIPTION_CSS_QUERY).attr("content").strip();
+        TermCounter wordsOccurrences = new TermCounter();
+        forEachWord(doc, wordsOccurrences::add);
+        return new PageAnalysis(getTitle(doc), wordsOccurrences.top(MAX_KEYWORDS_NUMBER),
+                description.isEmpty() ? null : description, doc.location());
+    }
+
+    //passes the stemmed words of the page's text elements to the consumer, walking
+    //their text nodes once instead of concatenating the text of every element
+    public void forEachWord(Document doc, Consumer<String> consumer) {
+        TokenScanner scanner = new TokenScanner(stopwords, STEM_CACHE, consumer);
+        NodeTraversor.traverse(new NodeVisitor() {
+            private int textElementsDepth; //the open elements whose text is tokenized
+
+            @Override
+            public void head(Node node, int depth) {
+                if (node instanceof TextNode textNode) {
+                    if (textElementsDepth > 0) {
+                        scanner.scan(textNode.getWholeText());
+                    }
+                } else if (node instanceof Element element) {
+                    if (TEXT_ELEMENTS.contains(element.normalName())) {
+                        textElementsDepth++;
+                    }
+                    if (element.isBlock() || LINE_BREAK_ELEMENT.equals(element.normalName())) {
+                        scanner.endToken();
+                    }
+                }
+            }
+
+            @Override
+            public void tail(Node node, int depth) {
+                if (node instanceof Element element) {
+                    if (TEXT_ELEMENTS.contains(element.normalName())) {
+                        textElementsDepth--;
+                    }
+                    if (element.isBlock()) {
+                        scanner.endToken();
+                    }
+                }
+            }
+        }, doc);
+        scanner.endToken();
+    }
+
+    public String getTitle(String url) {
         try {
-            Document doc = Jsoup.connect(url).get();
-            String pageText = getText(doc);
-            return tokenize(pageText);
+            return getTitle(fetchPage(url).parse());
         } catch (IOException e) {
             ExceptionsLogger.logClientException(e);
         }
         return null;
     }
 
-    public Set<String> tokenize(String input) {
-        //System.out.println("Input:" + input);
-        Stream<String> derivedWords = getStringStream(input);
-
-        Map<String, Long> wordsOccurrences = derivedWords.collect(
-                Collectors.groupingBy(word -> word, Collectors.counting()));
+    public Set<String> getKeywords(String url) {
+        return analyze(url).keywords();
+    }
 
-       return wordsOccurrences.entrySet().stream().sorted(Map.Entry.<String,
-                               Long>comparingByValue().
-                       reversed()).limit(Math.min(MAX_KEYWORDS_NUMBER,
-                       wordsOccurrences.size()))
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toSet());
+    public Set<String> tokenize(String input) {
+        TermCounter wordsOccurrences = new TermCounter();
+        forEachWord(input, wordsOccurrences::add);
+        return wordsOccurrences.top(MAX_KEYWORDS_NUMBER);
     }
 
     public Stream<String> getStringStream(String input) {
+        List<String> words = new ArrayList<>();
+        forEachWord(input, words::add);
+        return words.stream();
+    }
+
+    public void forEachWord(String input, Consumer<String> consumer) {
         if (input == null || input.isEmpty() || input.isBlank()) {
             throw new IllegalArgumentException("String passed for" +
                     " tokenization must not be null, blank or empty!");
         }
-        String refactoredInput = input.trim().replaceAll("\\p{Punct}",
-                "").replaceAll("\\s+", " ").toLowerCase();
+        TokenScanner scanner = new TokenScanner(stopwords, STEM_CACHE, consumer);
+        scanner.scan(input);
+        scanner.endToken();
+    }
 
+    public static StemCache getStemCache() {
+        return STEM_CACHE;
+    }
 
-        return Arrays.stream(refactoredInput.split(" ")).filter(word ->
-                !stopwords.contains(word)).map(HtmlTokenizer::applyAlgorithms);
+    //the form in which keywords are compared - the one page keywords are extracted in
+    public static String normalizeKeyword(String word) {
+        return STEM_CACHE.stem(word.toLowerCase());
     }
 
+    //pages that could not be fetched are not cached, the failure may be a temporary one
+    private PageAnalysis fetchAndCache(String url, PageMetadata cached) throws IOException {
+        FetchedPage page = cached == null ? fetcher.fetch(url)
+                : fetcher.fetch(url, cached.etag(), cached.lastModified());
 
-    private static String getText(Document doc) {
-        Elements elements = doc.select(CSS_QUERY);
+        if (page.isNotModified() && cached != null) {
+            return pageCache.revalidated(cached).toAnalysis();
+        }
+        if (page.isError()) {
+            throw new HttpStatusException("HTTP error fetching URL", page.statusCode(), url);
+        }
+        PageAnalysis analysis = analyze(page.parse());
+        pageCache.put(url, analysis, page.etag(), page.lastModified());
+        return analysis;
+    }
 
-        StringBuilder textBuilder = new StringBuilder();
-        for (Element element : elements) {
-            String text = element.text();
-            textBuilder.append(text).append(" ");
+    private FetchedPage fetchPage(String url) throws IOException {
+        FetchedPage page = fetcher.fetch(url);
+        if (page.isError()) {
+            throw new HttpStatusException("HTTP error fetching URL", page.statusCode(), url);
         }
-        return textBuilder.toString();
+        return page;
     }
 
-    private static String applyAlgorithms(String word) {
-        return suffixStemmer.stem(pluralStemmer.stem(word));
+    private static String getTitle(Document doc) {
+        return doc.title().strip().replaceAll(" +", "-");
     }
 }
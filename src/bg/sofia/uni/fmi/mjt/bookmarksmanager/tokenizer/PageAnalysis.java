@@ -0,0 +1,13 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer;
+
+import java.util.Set;
+
+//Everything extracted from a bookmarked page, out of a single fetch and parse.
+//The fields of a page that could not be fetched are null, except for its location.
+
+public record PageAnalysis(String title, Set<String> keywords, String description, String location) {
+
+    public static PageAnalysis failed(String url) {
+        return new PageAnalysis(null, null, null, url);
+    }
+}
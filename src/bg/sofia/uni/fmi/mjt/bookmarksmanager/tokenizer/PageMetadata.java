@@ -0,0 +1,30 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer;
+
+import java.util.Set;
+
+//A page's analysis as cached by PageMetadataCache, with what is needed to ask the
+//server whether the page has changed since it was fetched: its ETag and Last-Modified.
+
+public record PageMetadata(String url, String title, Set<String> keywords, String description,
+                           String location, long fetchedAtMillis, String etag, String lastModified) {
+
+    public static PageMetadata of(String url, PageAnalysis page, long fetchedAtMillis,
+                                  String etag, String lastModified) {
+        return new PageMetadata(url, page.title(), page.keywords(), page.description(), page.location(),
+                fetchedAtMillis, etag, lastModified);
+    }
+
+    public PageAnalysis toAnalysis() {
+        return new PageAnalysis(title, keywords, description, location);
+    }
+
+    //the same page, confirmed unchanged by a conditional request
+    public PageMetadata revalidated(long revalidatedAtMillis) {
+        return new PageMetadata(url, title, keywords, description, location, revalidatedAtMillis,
+                etag, lastModified);
+    }
+
+    public boolean hasValidators() {
+        return etag != null || lastModified != null;
+    }
+}
@@ -0,0 +1,245 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.UrlNormalizer;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+//The analyses of the pages fetched by any user, keyed by their normalized url, so a
+//page bookmarked again is not downloaded again. A page is served as it is while it
+//is fresh; after that it is revalidated with a conditional request and downloaded
+//only if it has changed. The least recently used pages are evicted from memory above
+//maxEntries; with a directory every page is also written there, in a file named by
+//the hash of its url, and read back from it after an eviction or a restart.
+
+public class PageMetadataCache {
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+    public static final int DEFAULT_MAX_DISK_ENTRIES = 100_000;
+    public static final Duration DEFAULT_FRESHNESS = Duration.ofHours(6);
+    private static final String ENTRY_SUFFIX = ".json";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final double DISK_PRUNING_RATIO = 0.9; //pruning makes room for a tenth of the pages
+    private static final Gson GSON = new Gson();
+
+    private final LinkedHashMap<String, PageMetadata> entries; //by normalized url, guarded by this
+    private final int maxEntries;
+    private final Path diskDirectory; //null for a cache kept only in memory
+    private final int maxDiskEntries;
+    private final long freshnessMillis;
+    private final Clock clock;
+    private final AtomicInteger diskEntries;
+    private final Object diskPruningLock;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder revalidations;
+
+    public PageMetadataCache() {
+        this(null);
+    }
+
+    public PageMetadataCache(Path diskDirectory) {
+        this(DEFAULT_MAX_ENTRIES, diskDirectory, DEFAULT_MAX_DISK_ENTRIES, DEFAULT_FRESHNESS, Clock.systemUTC());
+    }
+
+    public PageMetadataCache(int maxEntries, Path diskDirectory, int maxDiskEntries,
+                             Duration freshness, Clock clock) {
+        if (maxEntries <= 0 || maxDiskEntries <= 0 || freshness == null || freshness.isNegative()
+                || clock == null) {
+            throw new IllegalArgumentException("Max entries must be positive, freshness not " +
+                    "negative and clock not null!");
+        }
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PageMetadata> eldest) {
+                return size() > PageMetadataCache.this.maxEntries; //it stays on disk
+            }
+        };
+        this.diskDirectory = diskDirectory;
+        this.maxDiskEntries = maxDiskEntries;
+        this.freshnessMillis = freshness.toMillis();
+        this.clock = clock;
+        this.diskEntries = new AtomicInteger();
+        this.diskPruningLock = new Object();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.revalidations = new LongAdder();
+        if (diskDirectory != null) {
+            openDiskDirectory();
+        }
+    }
+
+    //the page's last analysis, however old it is; null if it has never been cached
+    public PageMetadata get(String url) {
+        String key = UrlNormalizer.normalize(url);
+        PageMetadata page;
+        synchronized (this) {
+            page = entries.get(key);
+        }
+        if (page == null && diskDirectory != null) {
+            page = readFromDisk(key);
+            if (page != null) {
+                synchronized (this) {
+                    entries.putIfAbsent(key, page);
+                }
+            }
+        }
+        (page == null ? misses : hits).increment();
+        return page;
+    }
+
+    public boolean isFresh(PageMetadata page) {
+        return clock.millis() - page.fetchedAtMillis() < freshnessMillis;
+    }
+
+    //caches a page that has just been downloaded
+    public PageMetadata put(String url, PageAnalysis page, String etag, String lastModified) {
+        String key = UrlNormalizer.normalize(url);
+        PageMetadata metadata = PageMetadata.of(key, page, clock.millis(), etag, lastModified);
+        store(key, metadata);
+        return metadata;
+    }
+
+    //the page has not changed since it was cached, it is fresh again
+    public PageMetadata revalidated(PageMetadata page) {
+        PageMetadata revalidated = page.revalidated(clock.millis());
+        store(page.url(), revalidated);
+        revalidations.increment();
+        return revalidated;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getDiskEntries() {
+        return diskEntries.get();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getRevalidations() {
+        return revalidations.sum();
+    }
+
+    private void store(String key, PageMetadata page) {
+        synchronized (this) {
+            entries.put(key, page);
+        }
+        if (diskDirectory != null) {
+            writeToDisk(key, page);
+        }
+    }
+
+    private void openDiskDirectory() {
+        try {
+            Files.createDirectories(diskDirectory);
+            try (Stream<Path> files = Files.list(diskDirectory)) {
+                diskEntries.set((int) files.filter(PageMetadataCache::isEntryFile).count());
+            }
+        } catch (IOException e) {
+            ExceptionsLogger.logClientException(e);
+        }
+    }
+
+    private PageMetadata readFromDisk(String key) {
+        Path file = entryFile(key);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            PageMetadata page = GSON.fromJson(reader, PageMetadata.class);
+            return page != null && key.equals(page.url()) ? page : null;
+        } catch (IOException | JsonParseException e) {
+            ExceptionsLogger.logClientException(e);
+            return null;
+        }
+    }
+
+    //the entry is replaced atomically, so a concurrent read sees either the old or the new one
+    private void writeToDisk(String key, PageMetadata page) {
+        Path file = entryFile(key);
+        try {
+            Path tmpFile = Files.createTempFile(diskDirectory, file.getFileName().toString(), TMP_SUFFIX);
+            try (BufferedWriter writer = Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8)) {
+                GSON.toJson(page, writer);
+            }
+            boolean isNew = !Files.exists(file);
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (isNew && diskEntries.incrementAndGet() > maxDiskEntries) {
+                pruneDisk();
+            }
+        } catch (IOException e) {
+            ExceptionsLogger.logClientException(e);
+        }
+    }
+
+    //deletes the pages written least recently; done for many of them at once, as it lists the directory
+    private void pruneDisk() {
+        synchronized (diskPruningLock) {
+            if (diskEntries.get() <= maxDiskEntries) {
+                return;
+            }
+            try (Stream<Path> files = Files.list(diskDirectory)) {
+                List<Path> oldestFirst = files.filter(PageMetadataCache::isEntryFile)
+                        .sorted(Comparator.comparing(PageMetadataCache::lastModifiedTime))
+                        .toList();
+                int toDelete = oldestFirst.size() - (int) (maxDiskEntries * DISK_PRUNING_RATIO);
+                for (int i = 0; i < toDelete; i++) {
+                    Files.deleteIfExists(oldestFirst.get(i));
+                }
+                diskEntries.set(oldestFirst.size() - Math.max(toDelete, 0));
+            } catch (IOException e) {
+                ExceptionsLogger.logClientException(e);
+            }
+        }
+    }
+
+    private Path entryFile(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return diskDirectory.resolve(HexFormat.of().formatHex(hash) + ENTRY_SUFFIX);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e); //every JVM must support it
+        }
+    }
+
+    private static boolean isEntryFile(Path file) {
+        return file.getFileName().toString().endsWith(ENTRY_SUFFIX);
+    }
+
+    private static FileTime lastModifiedTime(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0); //deleted meanwhile, it is pruned first
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer.algorithm.StemmingAlgorithm;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+//Memoizes the stems of the words, which repeat a lot across pages. The cache is a
+//fixed table with one entry per slot: a word whose slot is taken replaces the old
+//entry, so it is bounded without any bookkeeping and is read and written without
+//locks. A word is looked up right in the text it comes from, so a hit allocates nothing.
+
+public class StemCache {
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private record Entry(int hash, String word, String stem) {
+        boolean matches(int otherHash, CharSequence text, int start, int end) {
+            if (hash != otherHash || word.length() != end - start) {
+                return false;
+            }
+            for (int i = 0; i < word.length(); i++) {
+                if (word.charAt(i) != text.charAt(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final List<StemmingAlgorithm> algorithms; //applied in this order
+    private final AtomicReferenceArray<Entry> entries;
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    public StemCache(List<StemmingAlgorithm> algorithms) {
+        this(algorithms, DEFAULT_CAPACITY);
+    }
+
+    public StemCache(List<StemmingAlgorithm> algorithms, int capacity) {
+        if (algorithms == null || algorithms.isEmpty() || capacity <= 0) {
+            throw new IllegalArgumentException("Stemming algorithms must not be " +
+                    "null or empty and the capacity must be positive!");
+        }
+        this.algorithms = List.copyOf(algorithms);
+        this.entries = new AtomicReferenceArray<>(tableSizeFor(capacity));
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+    }
+
+    public String stem(String word) {
+        return word == null ? null : stem(word, 0, word.length());
+    }
+
+    //the stem of the word text[start, end)
+    public String stem(CharSequence text, int start, int end) {
+        int hash = hash(text, start, end);
+        int slot = (hash ^ (hash >>> 16)) & (entries.length() - 1);
+        Entry entry = entries.get(slot);
+        if (entry != null && entry.matches(hash, text, start, end)) {
+            hits.increment();
+            return entry.stem();
+        }
+
+        misses.increment();
+        String stem = algorithms.getFirst().stem(text, start, end);
+        for (int i = 1; i < algorithms.size(); i++) {
+            stem = algorithms.get(i).stem(stem);
+        }
+        entries.set(slot, new Entry(hash, text.subSequence(start, end).toString(), stem));
+        return stem;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int getCapacity() {
+        return entries.length();
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    //the same as the hash code of the word as a String
+    private static int hash(CharSequence text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        return hash;
+    }
+}
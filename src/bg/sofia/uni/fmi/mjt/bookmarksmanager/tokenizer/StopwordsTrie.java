@@ -0,0 +1,89 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Queue;
+
+//The stopwords as a trie laid out in plain arrays, level by level. The children of
+//every node are contiguous and sorted by their chars, so a token is probed with a
+//binary search per char right in the text it comes from, without creating a String.
+//Immutable once built, so it is shared by all the threads.
+
+public final class StopwordsTrie {
+    private final char[] labels; //labels[e] is the char of edge e, which leads to node e + 1
+    private final int[] firstEdges; //the edges of node n are firstEdges[n] ... firstEdges[n + 1] - 1
+    private final BitSet words; //the nodes at which a stopword ends
+    private final int size;
+
+    public StopwordsTrie(Collection<String> stopwords) {
+        String[] sorted = stopwords.stream().filter(Objects::nonNull).distinct().sorted().toArray(String[]::new);
+        StringBuilder edgeLabels = new StringBuilder();
+        int[] edges = new int[sorted.length == 0 ? 2 : totalLength(sorted) + 2];
+        BitSet wordEnds = new BitSet();
+
+        //a node is the range of sorted words that start with its prefix
+        Queue<int[]> nodes = new ArrayDeque<>();
+        nodes.add(new int[] {0, sorted.length, 0});
+        int node = 0;
+        while (!nodes.isEmpty()) {
+            int[] range = nodes.poll();
+            int start = range[0];
+            int end = range[1];
+            int depth = range[2];
+            edges[node] = edgeLabels.length();
+            if (start < end && sorted[start].length() == depth) {
+                wordEnds.set(node);
+                start++;
+            }
+            while (start < end) {
+                char label = sorted[start].charAt(depth);
+                int next = start;
+                while (next < end && sorted[next].charAt(depth) == label) {
+                    next++;
+                }
+                edgeLabels.append(label);
+                nodes.add(new int[] {start, next, depth + 1});
+                start = next;
+            }
+            node++;
+        }
+        edges[node] = edgeLabels.length();
+
+        this.labels = edgeLabels.toString().toCharArray();
+        this.firstEdges = Arrays.copyOf(edges, node + 1);
+        this.words = wordEnds;
+        this.size = sorted.length;
+    }
+
+    public boolean contains(CharSequence word) {
+        return word != null && contains(word, 0, word.length());
+    }
+
+    //whether text[start, end) is a stopword
+    public boolean contains(CharSequence text, int start, int end) {
+        int node = 0;
+        for (int i = start; i < end; i++) {
+            int edge = Arrays.binarySearch(labels, firstEdges[node], firstEdges[node + 1], text.charAt(i));
+            if (edge < 0) {
+                return false;
+            }
+            node = edge + 1;
+        }
+        return words.get(node);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static int totalLength(String[] words) {
+        int length = 0;
+        for (String word : words) {
+            length += word.length();
+        }
+        return length;
+    }
+}
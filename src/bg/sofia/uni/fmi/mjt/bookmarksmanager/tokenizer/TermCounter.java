@@ -0,0 +1,147 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+//Counts the words of a page in an open-addressing table (linear probing, plain
+//int counters) and picks the most frequent ones with a min-heap bounded to their
+//number, instead of boxing every counter and sorting all the distinct words.
+//Equally frequent words are ordered alphabetically, so the result does not depend
+//on hashing or on the order of the words.
+
+class TermCounter {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private String[] terms;
+    private int[] counts;
+    private int size;
+
+    TermCounter() {
+        this.terms = new String[INITIAL_CAPACITY];
+        this.counts = new int[INITIAL_CAPACITY];
+    }
+
+    void add(String term) {
+        if (term == null) {
+            return;
+        }
+        int slot = slotOf(terms, term);
+        if (terms[slot] == null) {
+            terms[slot] = term;
+            size++;
+        }
+        counts[slot]++;
+        if (size * 2 > terms.length) {
+            resize();
+        }
+    }
+
+    int count(String term) {
+        if (term == null) {
+            return 0;
+        }
+        int slot = slotOf(terms, term);
+        return terms[slot] == null ? 0 : counts[slot];
+    }
+
+    int size() {
+        return size;
+    }
+
+    //the k most frequent terms, the most frequent first
+    Set<String> top(int k) {
+        int[] heap = new int[Math.min(k, size)]; //slots, the least frequent of them at the root
+        int heapSize = 0;
+        for (int slot = 0; slot < terms.length && heap.length > 0; slot++) {
+            if (terms[slot] == null) {
+                continue;
+            }
+            if (heapSize < heap.length) {
+                heap[heapSize] = slot;
+                siftUp(heap, heapSize++);
+            } else if (isBefore(slot, heap[0])) {
+                heap[0] = slot;
+                siftDown(heap, heapSize);
+            }
+        }
+
+        String[] result = new String[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            result[i] = terms[heap[0]];
+            heap[0] = heap[i];
+            siftDown(heap, i);
+        }
+        return new LinkedHashSet<>(Arrays.asList(result));
+    }
+
+    //whether the term in the first slot is ranked before the one in the second
+    private boolean isBefore(int first, int second) {
+        if (counts[first] != counts[second]) {
+            return counts[first] > counts[second];
+        }
+        return terms[first].compareTo(terms[second]) < 0;
+    }
+
+    private void siftUp(int[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!isBefore(heap[parent], heap[index])) {
+                return;
+            }
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int heapSize) {
+        int index = 0;
+        while (true) {
+            int last = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < heapSize && isBefore(heap[last], heap[left])) {
+                last = left;
+            }
+            if (right < heapSize && isBefore(heap[last], heap[right])) {
+                last = right;
+            }
+            if (last == index) {
+                return;
+            }
+            swap(heap, index, last);
+            index = last;
+        }
+    }
+
+    private void resize() {
+        String[] oldTerms = terms;
+        int[] oldCounts = counts;
+        terms = new String[oldTerms.length * 2];
+        counts = new int[oldCounts.length * 2];
+        for (int i = 0; i < oldTerms.length; i++) {
+            if (oldTerms[i] != null) {
+                int slot = slotOf(terms, oldTerms[i]);
+                terms[slot] = oldTerms[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    //the slot of the term or the empty one where it belongs; the table is never full
+    private static int slotOf(String[] table, String term) {
+        int hash = term.hashCode();
+        int mask = table.length - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (table[slot] != null && !table[slot].equals(term)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+    }
+}
@@ -0,0 +1,52 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer;
+
+import java.util.function.Consumer;
+
+//Splits text into words in a single pass over its chars: ASCII punctuation is
+//dropped and the case lowered inline, into one reused buffer. The text may come in
+//pieces (the text nodes of a page), a word ends only at whitespace or endToken().
+//Stopwords are probed and stems looked up in the buffer, so a word becomes a String
+//only when its stem is not cached yet.
+
+class TokenScanner {
+    private static final char NO_BREAK_SPACE = '\u00A0';
+
+    private final StopwordsTrie stopwords;
+    private final StemCache stems;
+    private final Consumer<String> sink; //receives the stems of the words
+    private final StringBuilder token;
+
+    TokenScanner(StopwordsTrie stopwords, StemCache stems, Consumer<String> sink) {
+        this.stopwords = stopwords;
+        this.stems = stems;
+        this.sink = sink;
+        this.token = new StringBuilder();
+    }
+
+    void scan(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c) || c == NO_BREAK_SPACE) {
+                endToken();
+            } else if (!isPunctuation(c)) {
+                token.append(Character.toLowerCase(c));
+            }
+        }
+    }
+
+    void endToken() {
+        if (token.isEmpty()) {
+            return;
+        }
+        if (!stopwords.contains(token, 0, token.length())) {
+            sink.accept(stems.stem(token, 0, token.length()));
+        }
+        token.setLength(0);
+    }
+
+    //the chars of \p{Punct}
+    private static boolean isPunctuation(char c) {
+        return (c >= '!' && c <= '/') || (c >= ':' && c <= '@') ||
+                (c >= '[' && c <= '`') || (c >= '{' && c <= '~');
+    }
+}
@@ -23,4 +23,22 @@ public class RegularPluralFormAlgorithm implements StemmingAlgorithm {
         }
         return word;
     }
+
+    //only the stem is copied out of the text
+    @Override
+    public String stem(CharSequence text, int start, int end) {
+        int length = end - start;
+        if (length < MIN_WORD_LENGTH) {
+            return text.subSequence(start, end).toString();
+        }
+        char last = text.charAt(end - 1);
+        char beforeLast = text.charAt(end - 2);
+        if (length > MIN_WORD_LENGTH && beforeLast == 'e' && last == 's') {
+            return text.subSequence(start, end - 2).toString();
+        }
+        if (last == 's' && beforeLast != 's' && beforeLast != 'i' && beforeLast != 'u') {
+            return text.subSequence(start, end - 1).toString();
+        }
+        return text.subSequence(start, end).toString();
+    }
 }
@@ -4,4 +4,9 @@ public interface StemmingAlgorithm {
 
     int MIN_WORD_LENGTH = 3;
     String stem(String word);
+
+    //stems the word text[start, end); implementations may avoid copying it before stemming
+    default String stem(CharSequence text, int start, int end) {
+        return stem(text.subSequence(start, end).toString());
+    }
 }
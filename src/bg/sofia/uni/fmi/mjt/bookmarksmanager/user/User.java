@@ -1,10 +1,14 @@
 package bg.sofia.uni.fmi.mjt.bookmarksmanager.user;
 
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage.BookmarksGroupStorage;
+import java.io.Serial;
 import java.io.Serializable;
 import java.util.Objects;
 
 public class User implements Serializable {
+    //kept as the baseline computed it, the old users file is a stream of these objects
+    @Serial
+    private static final long serialVersionUID = 7969408767626805038L;
 
     private  String username;
     private  String password;
@@ -52,6 +56,11 @@ public class User implements Serializable {
         return storage;
     }
 
+    //the same user with their groups kept in another storage
+    public User withStorage(BookmarksGroupStorage newStorage) {
+        return new User(username, password, newStorage);
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj == this) {
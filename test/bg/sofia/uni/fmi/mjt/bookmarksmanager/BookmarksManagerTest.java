@@ -103,8 +103,10 @@ public class BookmarksManagerTest {
 
     @After
     public void cleanUp() throws IOException {
+        manager.getPersistence().close();
         Path path = Path.of(TEST_FILE_NAME);
         Files.deleteIfExists(path);
+        Files.deleteIfExists(Path.of(TEST_FILE_NAME + ".wal"));
         ExceptionsLogger.cleanUpLogs();
     }
 
@@ -0,0 +1,23 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class UrlNormalizerTest {
+
+    @Test
+    void testSchemeHostDefaultPortAndFragmentAreNormalized() {
+        assertEquals("https://example.com/", UrlNormalizer.normalize("  HTTPS://Example.Com:443  "));
+        assertEquals("http://example.com/a/B?q=Value", UrlNormalizer.normalize("http://EXAMPLE.com:80/a/B?q=Value#top"));
+        assertEquals("http://example.com:8080/", UrlNormalizer.normalize("http://example.com:8080"));
+    }
+
+    @Test
+    void testUnparsableUrlsAreOnlyTrimmed() {
+        assertEquals("not a url", UrlNormalizer.normalize(" not a url "));
+        assertEquals("mailto:Someone@Example.com", UrlNormalizer.normalize("mailto:Someone@Example.com"));
+        assertThrows(IllegalArgumentException.class, () -> UrlNormalizer.normalize(null));
+    }
+}
@@ -13,6 +13,8 @@ import java.util.Arrays;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -208,4 +210,14 @@ public class CommandExecutorTest {
                 Command(DISCONNECT_CMD, new String [] {}), null),
                 "No such a connection to the server!");
     }
+
+    @Test
+    void testIsBlockingSeparatesSlowCommands() {
+        assertTrue(CommandExecutor.isBlocking(new Command(ADD_CMD, new String[] {})));
+        assertTrue(CommandExecutor.isBlocking(new Command(CLEAN_UP_CMD, new String[] {})));
+        assertTrue(CommandExecutor.isBlocking(new Command(IMPORT_CMD, new String[] {})));
+        assertFalse(CommandExecutor.isBlocking(new Command(LIST_CMD, new String[] {})));
+        assertFalse(CommandExecutor.isBlocking(new Command(SEARCH_CMD, new String[] {})));
+        assertFalse(CommandExecutor.isBlocking(null));
+    }
 }
@@ -0,0 +1,101 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.enrichment;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.Bookmark;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer.HtmlTokenizer;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer.PageAnalysis;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EnrichmentQueueTest {
+    private static final long WAIT_MILLIS = 2_000;
+
+    private final CountDownLatch pagesReleased = new CountDownLatch(1);
+    private EnrichmentQueue queue;
+
+    //answers without the network once the test releases the pages
+    private class BlockedTokenizer extends HtmlTokenizer {
+        BlockedTokenizer() {
+            super(Set.of("the"));
+        }
+
+        @Override
+        public PageAnalysis analyze(String url) {
+            try {
+                pagesReleased.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (url.contains("missing")) {
+                return PageAnalysis.failed(url);
+            }
+            return new PageAnalysis("Title-of-" + url.substring(url.lastIndexOf('/') + 1),
+                    Set.of("java"), null, url);
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        pagesReleased.countDown();
+        queue.close();
+        ExceptionsLogger.cleanUpLogs();
+    }
+
+    @Test
+    void testPendingBookmarksAreEnrichedInTheBackground() throws InterruptedException {
+        queue = new EnrichmentQueue(new BlockedTokenizer(), 2);
+        List<Bookmark> enriched = new CopyOnWriteArrayList<>();
+        AtomicInteger finished = new AtomicInteger();
+        Bookmark java = Bookmark.unenriched("https://example.com/java", "Group1", false);
+        Bookmark git = Bookmark.unenriched("https://example.com/git", "Group1", false);
+
+        queue.submit("user1", java, enriched::add, finished::incrementAndGet);
+        queue.submit("user1", git, enriched::add, finished::incrementAndGet);
+        assertEquals(2, queue.getPendingCount());
+        assertEquals(Set.of(java, git), Set.copyOf(queue.getPendingBookmarks("user1")));
+        assertTrue(queue.getPendingBookmarks("user2").isEmpty());
+
+        pagesReleased.countDown();
+        waitUntilIdle();
+
+        assertEquals(2, finished.get());
+        assertEquals(Set.of(new Bookmark("Title-of-java", java.url(), Set.of("java"), "Group1"),
+                new Bookmark("Title-of-git", git.url(), Set.of("java"), "Group1")), Set.copyOf(enriched));
+        assertEquals(2, queue.getEnrichedCount());
+        assertTrue(queue.getPendingBookmarks("user1").isEmpty());
+    }
+
+    @Test
+    void testBookmarksOfMissingPagesAreLeftAsTheyAre() throws InterruptedException {
+        queue = new EnrichmentQueue(new BlockedTokenizer(), 1);
+        List<Bookmark> enriched = new CopyOnWriteArrayList<>();
+        CountDownLatch finished = new CountDownLatch(1);
+
+        queue.submit("user1", Bookmark.unenriched("https://example.com/missing", "Group1", false),
+                enriched::add, finished::countDown);
+        pagesReleased.countDown();
+
+        assertTrue(finished.await(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+        assertTrue(enriched.isEmpty());
+        assertEquals(1, queue.getFailedCount());
+        assertEquals(0, queue.getPendingCount());
+    }
+
+    private void waitUntilIdle() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (queue.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
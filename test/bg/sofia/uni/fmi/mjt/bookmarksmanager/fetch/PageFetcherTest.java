@@ -0,0 +1,129 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.fetch;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PageFetcherTest {
+    private static final long SLOW_RESPONSE_MILLIS = 200;
+    private static final String PAGE = "<html><head><title>Shared page</title></head><body></body></html>";
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private PageFetcher fetcher;
+    private final AtomicInteger pageRequests = new AtomicInteger();
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final AtomicInteger maxActiveRequests = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/slow", exchange -> {
+            pageRequests.incrementAndGet();
+            int active = activeRequests.incrementAndGet();
+            maxActiveRequests.accumulateAndGet(active, Math::max);
+            try {
+                Thread.sleep(SLOW_RESPONSE_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            activeRequests.decrementAndGet();
+            respond(exchange, PAGE);
+        });
+        server.createContext("/large", exchange -> respond(exchange, "a".repeat(10_000)));
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (fetcher != null) {
+            fetcher.close();
+        }
+        server.stop(0);
+        serverThreads.shutdownNow();
+        ExceptionsLogger.cleanUpLogs();
+    }
+
+    @Test
+    void testConcurrentFetchesOfOnePageShareOneDownload() throws IOException {
+        fetcher = new PageFetcher(8, 2, 1024, Duration.ofSeconds(5));
+        String url = url("/slow/page");
+        List<CompletableFuture<FetchedPage>> fetches = new ArrayList<>();
+        for (String spelling : List.of(url, url.replace("localhost", "LOCALHOST"), url + "#title", url)) {
+            fetches.add(fetcher.fetchAsync(spelling, null, null));
+        }
+
+        for (CompletableFuture<FetchedPage> fetch : fetches) {
+            assertEquals("Shared page", fetch.join().parse().title());
+        }
+        assertEquals(1, pageRequests.get(), "The page should be downloaded once");
+        assertEquals(1, fetcher.getDownloads());
+        assertEquals(3, fetcher.getSharedFetches());
+
+        fetcher.fetch(url);
+        assertEquals(2, pageRequests.get(), "A completed fetch should not be shared anymore");
+    }
+
+    @Test
+    void testFetchesOfOneHostStayWithinThePerHostLimit() {
+        fetcher = new PageFetcher(8, 2, 1024, Duration.ofSeconds(5));
+        List<CompletableFuture<FetchedPage>> fetches = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            fetches.add(fetcher.fetchAsync(url("/slow/" + i), null, null));
+        }
+        fetches.forEach(CompletableFuture::join);
+
+        assertEquals(6, pageRequests.get());
+        assertEquals(2, maxActiveRequests.get(), "At most 2 fetches should hit the same host at a time");
+    }
+
+    @Test
+    void testBodiesAboveTheMaxSizeAreTruncated() throws IOException {
+        fetcher = new PageFetcher(8, 2, 1024, Duration.ofSeconds(5));
+
+        assertEquals(1024, fetcher.fetch(url("/large")).body().length);
+    }
+
+    @Test
+    void testMalformedUrlsAreRejected() {
+        fetcher = new PageFetcher();
+
+        assertThrows(IllegalArgumentException.class, () -> fetcher.fetch("not a url"));
+        assertThrows(IllegalArgumentException.class, () -> fetcher.fetch(null));
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + server.getAddress().getPort() + path;
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+}
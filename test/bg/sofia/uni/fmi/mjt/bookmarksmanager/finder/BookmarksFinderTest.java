@@ -5,6 +5,7 @@ import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.BookmarksGroup;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage.BookmarksGroupStorage;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage.UsersStorage;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.user.User;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,6 +13,10 @@ import org.mockito.Mockito;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.atLeastOnce;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -22,6 +27,14 @@ import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.Mockito.when;
 
 public class BookmarksFinderTest {
+    private static final String TEST_DIRECTORY = "test" + File.separator +
+            "bg" + File.separator + "sofia" + File.separator +
+            "uni" + File.separator + "fmi" + File.separator + "mjt" +
+            File.separator + "bookmarksmanager" + File.separator + "finder"
+            + File.separator;
+    private static final String TEST_GROUPS_FILE = TEST_DIRECTORY + "testFinderGroupsFile.txt";
+    private static final String TEST_USERS_FILE = TEST_DIRECTORY + "testFinderUsersFile.dat";
+
     private BookmarksFinder finder;
 
     private Bookmark b1, b2, b3;
@@ -76,6 +89,12 @@ public class BookmarksFinderTest {
         when(groupB.getBookmarks()).thenReturn(List.of(b6));
     }
 
+    @AfterEach
+    void cleanUp() throws IOException {
+        Files.deleteIfExists(Path.of(TEST_GROUPS_FILE));
+        Files.deleteIfExists(Path.of(TEST_GROUPS_FILE + ".wal"));
+        Files.deleteIfExists(Path.of(TEST_USERS_FILE));
+    }
 
     @Test
     void testSearchBookmarksByUserInCache() {
@@ -169,4 +188,39 @@ public class BookmarksFinderTest {
         BookmarksFinder f2 = new BookmarksFinder();
         Assertions.assertTrue(f2.getCachedBookmarks().isEmpty());
     }
+
+    @Test
+    void testChangeEventsPatchTheCachedBookmarksInPlace() {
+        BookmarksGroupStorage groupStorage = new BookmarksGroupStorage(new ConcurrentHashMap<>(),
+                TEST_GROUPS_FILE);
+        UsersStorage usersStorage = new UsersStorage(new ConcurrentHashMap<>(), TEST_USERS_FILE);
+        usersStorage.getUsers().put("User4", new User("User4", "password4", groupStorage));
+        BookmarksFinder checkedFinder = new BookmarksFinder();
+        checkedFinder.setConsistencyCheckEnabled(true);
+
+        groupStorage.createNewGroup("Educational");
+        checkedFinder.groupCreated("User4", "Educational");
+        assertEquals(List.of(), checkedFinder.searchBookmarksByUser("User4", usersStorage));
+
+        groupStorage.addNewBookmarkToGroup(b1, "Educational");
+        checkedFinder.bookmarkAdded("User4", b1);
+        groupStorage.createNewGroup("DevOps");
+        checkedFinder.groupCreated("User4", "DevOps");
+        groupStorage.addNewBookmarkToGroup(b2, "DevOps");
+        checkedFinder.bookmarkAdded("User4", b2);
+        assertEquals(List.of(b1, b2), checkedFinder.searchBookmarksByTitle("User4", "git", usersStorage));
+        assertEquals(List.of(b2), checkedFinder.searchBookmarksByTags("User4", Set.of("commit"), usersStorage));
+
+        groupStorage.removeBookmarkFromGroup(b1.title(), "Educational");
+        checkedFinder.bookmarkRemoved("User4", b1);
+        assertEquals(List.of(b2), checkedFinder.searchBookmarksByUser("User4", usersStorage));
+        assertEquals(List.of(b2), checkedFinder.searchBookmarksByTitle("User4", "git", usersStorage));
+        Assertions.assertTrue(checkedFinder.searchBookmarksByGroup("Educational", "User4",
+                usersStorage).isEmpty());
+
+        groupStorage.addNewBookmarkToGroup(b3, "DevOps");
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> checkedFinder.searchBookmarksByUser("User4", usersStorage),
+                "A change without an event should be detected by the consistency check");
+    }
 }
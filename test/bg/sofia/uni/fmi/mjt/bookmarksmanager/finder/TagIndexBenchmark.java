@@ -0,0 +1,72 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.finder;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.Bookmark;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+//Compares a tags query answered by the inverted index with the scan over all the
+//user's bookmarks that the finder did before. Run it with: java ... TagIndexBenchmark
+
+public class TagIndexBenchmark {
+    private static final int BOOKMARKS_COUNT = 200_000;
+    private static final int VOCABULARY_SIZE = 20_000;
+    private static final int KEYWORDS_PER_BOOKMARK = 15;
+    private static final int QUERIES = 2_000;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        List<Bookmark> bookmarks = new ArrayList<>(BOOKMARKS_COUNT);
+        for (int i = 0; i < BOOKMARKS_COUNT; i++) {
+            Set<String> keywords = new HashSet<>();
+            while (keywords.size() < KEYWORDS_PER_BOOKMARK) {
+                keywords.add(word(zipf(random)));
+            }
+            bookmarks.add(new Bookmark("title" + i, "https://example.com/" + i, keywords, "Group" + i % 10));
+        }
+        TagIndex index = TagIndex.of(bookmarks);
+
+        List<Set<String>> queries = new ArrayList<>();
+        for (int i = 0; i < QUERIES; i++) {
+            queries.add(Set.of(word(zipf(random)), word(VOCABULARY_SIZE / 2 + random.nextInt(100))));
+        }
+
+        long matches = 0;
+        for (Set<String> query : queries) { //warm up
+            matches += index.search(query).size() + scan(bookmarks, query).size();
+        }
+
+        long start = System.nanoTime();
+        for (Set<String> query : queries) {
+            matches += index.search(query).size();
+        }
+        long indexNanos = (System.nanoTime() - start) / QUERIES;
+
+        start = System.nanoTime();
+        for (Set<String> query : queries) {
+            matches += scan(bookmarks, query).size();
+        }
+        long scanNanos = (System.nanoTime() - start) / QUERIES;
+
+        System.out.printf("%d bookmarks, %d two-tag queries (%d matches)%n", BOOKMARKS_COUNT, QUERIES, matches);
+        System.out.printf("inverted index: %.1f us/query%n", indexNanos / 1000.0);
+        System.out.printf("linear scan:    %.1f us/query%n", scanNanos / 1000.0);
+    }
+
+    private static List<Bookmark> scan(List<Bookmark> bookmarks, Set<String> keywords) {
+        return bookmarks.stream().filter(bookmark -> bookmark.keywords().containsAll(keywords)).toList();
+    }
+
+    //frequent words are much more common than rare ones, as in real pages
+    private static int zipf(Random random) {
+        return (int) Math.min(VOCABULARY_SIZE - 1, Math.floor(Math.exp(random.nextDouble()
+                * Math.log(VOCABULARY_SIZE))) - 1);
+    }
+
+    private static String word(int number) {
+        return "word" + Integer.toString(number, Character.MAX_RADIX) + "x";
+    }
+}
@@ -0,0 +1,57 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.finder;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.Bookmark;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TagIndexTest {
+    private Bookmark mjtCourse;
+    private Bookmark github;
+    private Bookmark ozone;
+    private TagIndex index;
+
+    @BeforeEach
+    void setUp() {
+        mjtCourse = new Bookmark("MjtCourse-github", "https://github.com/fmi/java-course/tree/master",
+                Set.of("fmi", "mjt", "java", "github"), "Educational");
+        github = new Bookmark("Github", "https://github.com/",
+                Set.of("github", "branch", "commit"), "DevOps");
+        ozone = new Bookmark("Ozone", "https://www.ozone.bg/",
+                Set.of("bookstore", "book", "gaming"), "OnlineStores");
+        index = TagIndex.of(List.of(mjtCourse, github, ozone));
+    }
+
+    @Test
+    void testSearchIntersectsThePostingLists() {
+        assertEquals(List.of(mjtCourse, github), index.search(Set.of("github")));
+        assertEquals(List.of(mjtCourse), index.search(Set.of("github", "java")));
+        assertTrue(index.search(Set.of("github", "book")).isEmpty());
+        assertTrue(index.search(Set.of("noSuchTag")).isEmpty());
+    }
+
+    @Test
+    void testSearchComparesStemmedKeywords() {
+        assertEquals(List.of(ozone), index.search(Set.of("Books", "gaming")),
+                "Query tags should be matched in the stemmed form of the keywords");
+    }
+
+    @Test
+    void testIndexIsUpdatedIncrementally() {
+        index.remove(github);
+        assertEquals(List.of(mjtCourse), index.search(Set.of("github")));
+
+        Bookmark retagged = new Bookmark("Ozone", "https://www.ozone.bg/",
+                Set.of("github"), "OnlineStores");
+        index.add(retagged);
+        assertEquals(List.of(mjtCourse, retagged), index.search(Set.of("github")));
+        assertTrue(index.search(Set.of("book")).isEmpty(),
+                "A bookmark added again should replace its old keywords");
+        assertEquals(2, index.size());
+    }
+}
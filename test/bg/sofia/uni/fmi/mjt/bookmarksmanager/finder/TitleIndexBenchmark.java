@@ -0,0 +1,69 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.finder;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.Bookmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+//Compares a title query answered by the trigram index with the scan over all the
+//user's bookmarks that the finder did before. Run it with: java ... TitleIndexBenchmark
+
+public class TitleIndexBenchmark {
+    private static final int BOOKMARKS_COUNT = 200_000;
+    private static final int VOCABULARY_SIZE = 20_000;
+    private static final int WORDS_PER_TITLE = 5;
+    private static final int QUERIES = 500;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        List<Bookmark> bookmarks = new ArrayList<>(BOOKMARKS_COUNT);
+        for (int i = 0; i < BOOKMARKS_COUNT; i++) {
+            StringBuilder title = new StringBuilder();
+            for (int j = 0; j < WORDS_PER_TITLE; j++) {
+                title.append(j == 0 ? "" : " ").append(word(random.nextInt(VOCABULARY_SIZE)));
+            }
+            title.append(" #").append(i);
+            bookmarks.add(new Bookmark(title.toString(), "https://example.com/" + i, Set.of(), "Group" + i % 10));
+        }
+        TitleIndex index = TitleIndex.of(bookmarks);
+
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < QUERIES; i++) {
+            String word = word(random.nextInt(VOCABULARY_SIZE));
+            queries.add(word.substring(1).toUpperCase()); //a part of a word, in another case
+        }
+
+        long matches = 0;
+        for (String query : queries) { //warm up
+            matches += index.search(query).size() + scan(bookmarks, query).size();
+        }
+
+        long start = System.nanoTime();
+        for (String query : queries) {
+            matches += index.search(query).size();
+        }
+        long indexNanos = (System.nanoTime() - start) / QUERIES;
+
+        start = System.nanoTime();
+        for (String query : queries) {
+            matches += scan(bookmarks, query).size();
+        }
+        long scanNanos = (System.nanoTime() - start) / QUERIES;
+
+        System.out.printf("%d bookmarks, %d substring queries (%d matches)%n", BOOKMARKS_COUNT, QUERIES, matches);
+        System.out.printf("trigram index: %.1f us/query%n", indexNanos / 1000.0);
+        System.out.printf("linear scan:   %.1f us/query%n", scanNanos / 1000.0);
+    }
+
+    //what BookmarksFinder.searchBookmarksByTitle did before the index
+    private static List<Bookmark> scan(List<Bookmark> bookmarks, String title) {
+        return bookmarks.stream().
+                filter(bookmark -> bookmark.title().toLowerCase().contains(title.toLowerCase())).toList();
+    }
+
+    private static String word(int number) {
+        return "w" + Integer.toString(number * 7919 + 100_000, Character.MAX_RADIX);
+    }
+}
@@ -0,0 +1,59 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.finder;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.Bookmark;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TitleIndexTest {
+    private Bookmark mjtCourse;
+    private Bookmark github;
+    private Bookmark ozone;
+    private TitleIndex index;
+
+    @BeforeEach
+    void setUp() {
+        mjtCourse = new Bookmark("MjtCourse-github", "https://github.com/fmi/java-course/tree/master",
+                Set.of("fmi", "mjt", "java", "github"), "Educational");
+        github = new Bookmark("Github", "https://github.com/",
+                Set.of("github", "branch", "commit"), "DevOps");
+        ozone = new Bookmark("Ozone", "https://www.ozone.bg/",
+                Set.of("bookstore", "book", "gaming"), "OnlineStores");
+        index = TitleIndex.of(List.of(mjtCourse, github, ozone));
+    }
+
+    @Test
+    void testSearchMatchesSubstringsIgnoringCase() {
+        assertEquals(List.of(mjtCourse, github), index.search("GITHUB"));
+        assertEquals(List.of(mjtCourse), index.search("Course-Git"));
+        assertTrue(index.search("hubgit").isEmpty(),
+                "Candidates having all the trigrams must still contain the query");
+        assertTrue(index.search("noSuchTitle").isEmpty());
+    }
+
+    @Test
+    void testShortQueriesAreAnsweredByAScan() {
+        assertEquals(List.of(mjtCourse, ozone), index.search("o"));
+        assertEquals(List.of(mjtCourse, github), index.search("Gi"));
+        assertEquals(3, index.search("").size());
+    }
+
+    @Test
+    void testIndexIsUpdatedIncrementally() {
+        index.remove(github);
+        assertEquals(List.of(mjtCourse), index.search("github"));
+
+        Bookmark ozoneGithub = new Bookmark("Ozone-github", "https://www.ozone.bg/",
+                Set.of("github"), "OnlineStores");
+        index.add(ozoneGithub);
+        index.remove(ozone);
+        assertEquals(List.of(mjtCourse, ozoneGithub), index.search("github"));
+        assertEquals(List.of(ozoneGithub), index.search("zone"));
+        assertEquals(2, index.size());
+    }
+}
@@ -0,0 +1,138 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.linkcheck;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LinkHealthCacheTest {
+    private static final String TEST_CACHE_FILE = "test" + File.separator +
+            "bg" + File.separator + "sofia" + File.separator +
+            "uni" + File.separator + "fmi" + File.separator + "mjt" +
+            File.separator + "bookmarksmanager" + File.separator + "linkcheck"
+            + File.separator + "testLinkHealth";
+    private static final Duration TTL = Duration.ofMinutes(10);
+
+    private final TestClock clock = new TestClock();
+
+    private static class TestClock extends Clock {
+        private long millis = 1_000_000;
+
+        void advance(Duration duration) {
+            millis += duration.toMillis();
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+
+    @AfterEach
+    void cleanUp() throws IOException {
+        Files.deleteIfExists(Path.of(TEST_CACHE_FILE));
+        ExceptionsLogger.cleanUpLogs();
+    }
+
+    @Test
+    void testEntriesExpireAfterTheTtl() {
+        LinkHealthCache cache = new LinkHealthCache(null, TTL, 10, clock);
+        cache.record("https://example.com/page", 200);
+
+        assertEquals(200, cache.get("https://example.com/page").statusCode());
+        clock.advance(TTL);
+        assertNull(cache.get("https://example.com/page"), "An entry older than the ttl must be probed again");
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void testFailuresExpireBeforeTheTtl() {
+        LinkHealthCache cache = new LinkHealthCache(null, TTL, Duration.ofMinutes(1), 10, clock);
+        cache.record("https://example.com/alive", 200);
+        cache.record("https://example.com/down", LinkProber.FAILED_PROBE);
+        cache.record("https://example.com/gone", 404);
+
+        clock.advance(Duration.ofMinutes(1));
+        assertNull(cache.get("https://example.com/down"), "A failed probe should be retried after the failure ttl");
+        assertNull(cache.get("https://example.com/gone"));
+        assertEquals(200, cache.get("https://example.com/alive").statusCode());
+    }
+
+    @Test
+    void testSpellingsOfOneLinkShareTheirEntry() {
+        LinkHealthCache cache = new LinkHealthCache(null, TTL, 10, clock);
+        cache.record("HTTPS://Example.COM:443/page#section", 404);
+
+        assertNotNull(cache.get("https://example.com/page"));
+        assertNull(cache.get("https://example.com/PAGE"), "Paths are case-sensitive");
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testFailuresInARowAreCountedAndResetByASuccess() {
+        LinkHealthCache cache = new LinkHealthCache(null, TTL, 10, clock);
+        cache.record("https://example.com", LinkProber.FAILED_PROBE);
+        clock.advance(TTL);
+        LinkHealth health = cache.record("https://example.com", 503);
+
+        assertEquals(2, health.failuresCount(), "Expired entries should still count the failures");
+        assertFalse(health.isValid());
+        assertEquals(0, cache.record("https://example.com", 200).failuresCount());
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntriesAreEvicted() {
+        LinkHealthCache cache = new LinkHealthCache(null, TTL, 2, clock);
+        cache.record("https://a.com", 200);
+        cache.record("https://b.com", 200);
+        cache.get("https://a.com");
+        cache.record("https://c.com", 200);
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("https://a.com"));
+        assertNull(cache.get("https://b.com"), "The least recently used entry should be evicted");
+        assertNotNull(cache.get("https://c.com"));
+    }
+
+    @Test
+    void testSavedEntriesAreRestoredWithTheirRecency() {
+        LinkHealthCache cache = new LinkHealthCache(TEST_CACHE_FILE, TTL, 2, clock);
+        cache.record("https://a.com", 200);
+        cache.record("https://b.com", 404);
+        cache.get("https://a.com");
+        cache.close();
+
+        LinkHealthCache restored = new LinkHealthCache(TEST_CACHE_FILE, TTL, 2, clock);
+        assertEquals(404, restored.get("https://b.com").statusCode());
+        assertEquals(1, restored.get("https://b.com").failuresCount());
+        restored.record("https://c.com", 200);
+        assertNull(restored.get("https://a.com"), "a.com was used least recently before b.com's reads");
+        assertTrue(restored.get("https://c.com").isValid());
+    }
+}
@@ -0,0 +1,172 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.linkcheck;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LinkProberTest {
+    private static final long SLOW_RESPONSE_MILLIS = 100;
+    private static final int SLOW_LINKS_COUNT = 24;
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private LinkProber prober;
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final AtomicInteger maxActiveRequests = new AtomicInteger();
+    private final AtomicInteger aliveRequests = new AtomicInteger();
+    private final List<String> rangeHeaders = new ArrayList<>();
+
+    //a stand-in for the bookmarked sites, on both of the loopback's names
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/alive", exchange -> {
+            aliveRequests.incrementAndGet();
+            respond(exchange, 200);
+        });
+        server.createContext("/gone", exchange -> respond(exchange, 404));
+        server.createContext("/no-head", exchange -> {
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                respond(exchange, 405);
+                return;
+            }
+            synchronized (rangeHeaders) {
+                rangeHeaders.add(exchange.getRequestHeaders().getFirst("Range"));
+            }
+            respond(exchange, 206);
+        });
+        server.createContext("/slow", exchange -> {
+            int active = activeRequests.incrementAndGet();
+            maxActiveRequests.accumulateAndGet(active, Math::max);
+            try {
+                Thread.sleep(SLOW_RESPONSE_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            activeRequests.decrementAndGet();
+            respond(exchange, 200);
+        });
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (prober != null) {
+            prober.close();
+        }
+        server.stop(0);
+        serverThreads.shutdownNow();
+        ExceptionsLogger.cleanUpLogs();
+    }
+
+    @Test
+    void testProbeAllReportsTheStatusOfEachLink() {
+        prober = new LinkProber(8, 4, Duration.ofSeconds(2));
+        Map<String, Integer> statusCodes = prober.probeAll(List.of(url("localhost", "/alive"),
+                url("localhost", "/gone"), "http://localhost:1/unreachable", "not a url"));
+
+        assertEquals(200, statusCodes.get(url("localhost", "/alive")));
+        assertEquals(404, statusCodes.get(url("localhost", "/gone")));
+        assertEquals(LinkProber.FAILED_PROBE, statusCodes.get("http://localhost:1/unreachable"));
+        assertEquals(LinkProber.FAILED_PROBE, statusCodes.get("not a url"));
+        assertTrue(LinkProber.isValid(statusCodes.get(url("localhost", "/alive"))));
+        assertFalse(LinkProber.isValid(statusCodes.get(url("localhost", "/gone"))));
+    }
+
+    @Test
+    void testRejectedHeadFallsBackToARangedGet() {
+        prober = new LinkProber(8, 4, Duration.ofSeconds(2));
+
+        assertEquals(206, prober.probe(url("localhost", "/no-head")).join(),
+                "A link answering only GET requests is alive");
+        assertEquals(List.of("bytes=0-0"), rangeHeaders, "Only the page's first byte should be requested");
+    }
+
+    @Test
+    void testCachedLinksAreNotProbedAgain() {
+        LinkHealthCache cache = new LinkHealthCache();
+        prober = new LinkProber(8, 4, Duration.ofSeconds(2), cache);
+        String alive = url("localhost", "/alive");
+        Map<String, Integer> statusCodes = prober.probeAll(List.of(alive, alive.replace("localhost", "LOCALHOST"),
+                alive + "#fragment"));
+        prober.probeAll(List.of(alive));
+
+        assertEquals(1, aliveRequests.get(), "One link should be probed once");
+        assertEquals(3, statusCodes.size());
+        assertEquals(200, cache.get(alive).statusCode());
+    }
+
+    @Test
+    void testProbesRunConcurrentlyWithinThePerHostLimit() {
+        prober = new LinkProber(16, 3, Duration.ofSeconds(5));
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < SLOW_LINKS_COUNT; i++) {
+            urls.add(url("localhost", "/slow/" + i));
+        }
+
+        long start = System.nanoTime();
+        prober.probeAll(urls);
+        long elapsedMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+
+        assertEquals(3, maxActiveRequests.get(), "At most 3 probes should hit the same host at a time");
+        assertTrue(elapsedMillis < SLOW_LINKS_COUNT * SLOW_RESPONSE_MILLIS / 2,
+                "The probes should not run one after another, took " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void testProbesOfAllTheHostsShareTheGlobalLimit() {
+        prober = new LinkProber(4, 3, Duration.ofSeconds(5));
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < SLOW_LINKS_COUNT; i++) {
+            urls.add(url(i % 2 == 0 ? "localhost" : "127.0.0.1", "/slow/" + i));
+        }
+        prober.probeAll(urls);
+
+        assertEquals(4, maxActiveRequests.get(), "At most 4 probes should run at a time");
+    }
+
+    @Test
+    void testProbesCutOffByCloseAreNotRecorded() throws Exception {
+        LinkHealthCache cache = new LinkHealthCache();
+        prober = new LinkProber(8, 4, Duration.ofSeconds(5), cache);
+        CompletableFuture<Integer> probe = prober.probe(url("localhost", "/slow/0"));
+        while (activeRequests.get() == 0) {
+            Thread.onSpinWait();
+        }
+        prober.close();
+
+        probe.exceptionally(e -> LinkProber.FAILED_PROBE).get(5, TimeUnit.SECONDS);
+        assertEquals(0, cache.size(), "A probe cut off by close() should not count as a failure of the link");
+    }
+
+    private String url(String host, String path) {
+        return "http://" + host + ":" + server.getAddress().getPort() + path;
+    }
+
+    private static void respond(HttpExchange exchange, int statusCode) throws IOException {
+        exchange.sendResponseHeaders(statusCode, -1);
+        exchange.close();
+    }
+}
@@ -0,0 +1,59 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.outerimport;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ChromeBookmarksReaderTest {
+
+    @Test
+    void testBookmarksOfNestedFoldersAreReadInTheirOrder() throws IOException {
+        //the fields are in Chrome's order: a folder's children come before its type
+        String json = """
+            {
+              "checksum": "abc",
+              "roots": {
+                "bookmark_bar": {
+                  "children": [
+                    { "date_added": "1", "guid": "g1", "meta_info": { "k": "v" }, "name": "Google",
+                      "type": "url", "url": "https://www.google.com" },
+                    { "children": [
+                        { "name": "GitHub", "type": "url", "url": "https://github.com" },
+                        { "children": [ { "name": "Deep", "type": "url", "url": "https://deep.com" } ],
+                          "name": "Inner", "type": "folder" }
+                      ], "name": "Dev", "type": "folder" }
+                  ],
+                  "name": "Bookmarks bar", "type": "folder"
+                },
+                "other": { "children": [], "type": "folder" },
+                "emptyNode": { },
+                "sync_transaction_version": "7"
+              },
+              "version": 1
+            }
+            """;
+        List<String> groups = new ArrayList<>();
+        List<ChromeBookmark> bookmarks = new ArrayList<>();
+
+        ChromeBookmarksReader.read(new StringReader(json), groups::add, bookmarks::add);
+
+        assertEquals(List.of("bookmark_bar", "other"), groups, "Only the roots with children are groups");
+        assertEquals(List.of(new ChromeBookmark("bookmark_bar", "Google", "https://www.google.com", "g1", "1", null),
+                new ChromeBookmark("bookmark_bar", "GitHub", "https://github.com", null, null, null),
+                new ChromeBookmark("bookmark_bar", "Deep", "https://deep.com", null, null, null)), bookmarks);
+    }
+
+    @Test
+    void testMalformedFilesAreRejected() {
+        assertThrows(IOException.class, () -> ChromeBookmarksReader.read(
+                new StringReader("{ \"roots\": { \"other\": { \"children\": [ "), group -> { }, bookmark -> { }));
+        assertThrows(IllegalStateException.class, () -> ChromeBookmarksReader.read(
+                new StringReader("[]"), group -> { }, bookmark -> { }));
+    }
+}
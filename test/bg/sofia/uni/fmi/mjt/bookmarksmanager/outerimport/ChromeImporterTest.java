@@ -1,14 +1,34 @@
 package bg.sofia.uni.fmi.mjt.bookmarksmanager.outerimport;
 
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.Bookmark;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.BookmarksGroup;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.fetch.PageFetcher;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer.HtmlTokenizer;
+import com.sun.net.httpserver.HttpServer;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.MockedConstruction;
 
+import java.io.File;
 import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -18,9 +38,19 @@ import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.doAnswer;
 
 public class ChromeImporterTest {
+    private static final Path TEST_HOME = Path.of("test" + File.separator +
+            "bg" + File.separator + "sofia" + File.separator +
+            "uni" + File.separator + "fmi" + File.separator + "mjt" +
+            File.separator + "bookmarksmanager" + File.separator + "outerimport"
+            + File.separator + "testHome");
 
     private String originalOs;
     private String originalHome;
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final AtomicInteger maxActiveRequests = new AtomicInteger();
 
     @BeforeEach
     void rememberSystemProperties() {
@@ -29,9 +59,20 @@ public class ChromeImporterTest {
     }
 
     @AfterEach
-    void restoreSystemProperties() {
+    void restoreSystemProperties() throws IOException {
         if (originalOs != null) System.setProperty("os.name", originalOs);
         if (originalHome != null) System.setProperty("user.home", originalHome);
+        if (server != null) {
+            server.stop(0);
+            serverThreads.shutdownNow();
+        }
+        if (Files.exists(TEST_HOME)) {
+            try (Stream<Path> files = Files.walk(TEST_HOME)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
     }
 
     private static void setLinuxLikeOs() {
@@ -114,4 +155,122 @@ public class ChromeImporterTest {
         assertNull(groups, "IOException at FileReader " +
                 "construction should be caught and return null");
     }
+
+    @Test
+    void testPagesAreAnalyzedConcurrentlyOnceEach() throws IOException {
+        startPagesServer();
+        writeChromeBookmarks("""
+            {
+              "roots": {
+                "bookmark_bar": { "children": [
+                    { "type": "url", "name": "Page1", "url": "%1$s/1" },
+                    { "type": "url", "name": "Page2", "url": "%1$s/2" },
+                    { "type": "folder", "name": "Dev", "children": [
+                        { "type": "url", "name": "Page3", "url": "%1$s/3" },
+                        { "type": "url", "name": "Page1 again", "url": "%1$s/1" }
+                    ]}
+                ]},
+                "other": { "children": [
+                    { "type": "url", "name": "Page4", "url": "%1$s/4" },
+                    { "type": "url", "name": "Page5", "url": "%1$s/5" }
+                ]}
+              }
+            }
+            """.formatted(site()));
+
+        try (PageFetcher fetcher = new PageFetcher(8, 8, 1024, Duration.ofSeconds(5))) {
+            ImportProgress progress = new ImportProgress();
+            Map<String, BookmarksGroup> groups = ChromeImporter.importChromeGroups(
+                    new HtmlTokenizer(Set.of("the"), null, fetcher), 3, progress);
+
+            assertEquals(4, groups.get("bookmark_bar").getBookmarks().size());
+            assertEquals(2, groups.get("other").getBookmarks().size());
+            for (BookmarksGroup group : groups.values()) {
+                for (Bookmark bookmark : group.getBookmarks()) {
+                    assertTrue(bookmark.keywords().contains("page"), "Every bookmark should get its keywords");
+                }
+            }
+            assertEquals(5, requests.get(), "A page bookmarked twice should be analyzed once");
+            assertTrue(maxActiveRequests.get() > 1, "The pages should be analyzed concurrently");
+            assertTrue(maxActiveRequests.get() <= 3, "At most 3 pages should be analyzed at a time");
+            assertEquals(5, progress.getTotalPages());
+            assertEquals(5, progress.getAnalyzedPages());
+            assertTrue(progress.isFinished());
+        }
+    }
+
+    @Test
+    void testReimportAnalyzesOnlyTheNewAndChangedBookmarks() throws IOException {
+        startPagesServer();
+        String bookmarks = """
+            { "roots": { "bookmark_bar": { "children": [
+                { "guid": "g1", "date_added": "100", "name": "Page1", "type": "url", "url": "%1$s/1" },
+                { "guid": "g2", "date_added": "200", "name": "Page2", "type": "url", "url": "%1$s/2" },
+                { "guid": "g3", "date_added": "300", "name": "Stored", "type": "url", "url": "%1$s/3" }
+            ]}}}
+            """;
+        writeChromeBookmarks(bookmarks.formatted(site()));
+
+        try (PageFetcher fetcher = new PageFetcher(8, 8, 1024, Duration.ofSeconds(5))) {
+            HtmlTokenizer tokenizer = new HtmlTokenizer(Set.of("the"), null, fetcher);
+            ChromeImport first = ChromeImporter.importChanges(tokenizer, 2, new ImportProgress(),
+                    ChromeImportState.empty(), chromeBookmark -> chromeBookmark.title().equals("Stored"));
+            assertEquals(2, first.imported().size(), "The bookmarks stored already should not be imported again");
+            assertEquals(3, first.state().bookmarks().size());
+
+            ImportProgress unchangedProgress = new ImportProgress();
+            ChromeImport unchanged = ChromeImporter.importChanges(tokenizer, 2, unchangedProgress, first.state(),
+                    chromeBookmark -> false);
+            assertTrue(unchanged.imported().isEmpty());
+            assertEquals(first.state(), unchanged.state());
+            assertEquals(0, unchangedProgress.getTotalPages(), "An unchanged file should not be analyzed");
+
+            writeChromeBookmarks(bookmarks.replace("\"200\", \"name\": \"Page2\"",
+                            "\"200\", \"date_modified\": \"400\", \"name\": \"Renamed\"")
+                    .replace("]}}}", ", { \"guid\": \"g4\", \"name\": \"Page4\", \"type\": \"url\", " +
+                            "\"url\": \"%1$s/4\" } ]}}}").formatted(site()));
+            ChromeImport changed = ChromeImporter.importChanges(tokenizer, 2, new ImportProgress(), first.state(),
+                    chromeBookmark -> false);
+            assertEquals(List.of("Renamed", "Page4"), changed.imported().stream().map(Bookmark::title).toList());
+            assertEquals(List.of("Page2"), changed.replaced().values().stream().map(ChromeBookmark::title).toList());
+            assertEquals("Renamed", changed.replaced().keySet().iterator().next().title());
+            assertEquals(4, changed.state().bookmarks().size());
+            assertEquals(4, requests.get(), "Every page should be fetched only when it is new or changed");
+        }
+    }
+
+    private void startPagesServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            maxActiveRequests.accumulateAndGet(activeRequests.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            activeRequests.decrementAndGet();
+            byte[] page = "<html><body><p>Bookmarked page</p></body></html>".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+            exchange.sendResponseHeaders(200, page.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(page);
+            }
+        });
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.start();
+    }
+
+    private String site() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    private static void writeChromeBookmarks(String json) throws IOException {
+        System.setProperty("os.name", "Linux");
+        System.setProperty("user.home", TEST_HOME.toString());
+        Path bookmarksFile = TEST_HOME.resolve(Path.of(".config", "google-chrome", "Default", "Bookmarks"));
+        Files.createDirectories(bookmarksFile.getParent());
+        Files.writeString(bookmarksFile, json);
+    }
 }
@@ -0,0 +1,50 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.outerimport;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NetscapeBookmarksReaderTest {
+
+    @Test
+    void testBookmarksAreReadWithTheirInnermostFolder() throws IOException {
+        //the way Firefox exports them: unclosed DT and P tags, a DD with a folder's description
+        String html = """
+            <!DOCTYPE NETSCAPE-Bookmark-file-1>
+            <META HTTP-EQUIV="Content-Type" CONTENT="text/html; charset=UTF-8">
+            <TITLE>Bookmarks</TITLE>
+            <H1>Bookmarks Menu</H1>
+            <DL><p>
+                <DT><A HREF="https://top.com" ADD_DATE="1">Top</A>
+                <DT><H3 ADD_DATE="1" PERSONAL_TOOLBAR_FOLDER="true">Bookmarks Toolbar</H3>
+                <DD>Add bookmarks to this folder to see them displayed on the Bookmarks Toolbar
+                <DL><p>
+                    <DT><A HREF="https://a.com" TAGS="news,daily">A site</A>
+                    <DT><H3>Inner</H3>
+                    <DL><p>
+                        <DT><A HREF="https://b.com">B</A>
+                        <DT><A HREF="place:sort=8&maxResults=10">Recent Tags</A>
+                    </DL><p>
+                    <DT><A HREF="https://c.com"></A>
+                </DL><p>
+                <DT><A HREF="javascript:void(0)">Bookmarklet</A>
+                <DT><A HREF="http://d.com">D</A>
+            </DL>
+            """;
+        List<NetscapeBookmark> bookmarks = new ArrayList<>();
+
+        NetscapeBookmarksReader.read(new StringReader(html), bookmarks::add);
+
+        assertEquals(List.of(new NetscapeBookmark(null, "Top", "https://top.com", Set.of()),
+                new NetscapeBookmark("Bookmarks Toolbar", "A site", "https://a.com", Set.of("news", "daily")),
+                new NetscapeBookmark("Inner", "B", "https://b.com", Set.of()),
+                new NetscapeBookmark("Bookmarks Toolbar", "https://c.com", "https://c.com", Set.of()),
+                new NetscapeBookmark(null, "D", "http://d.com", Set.of())), bookmarks);
+    }
+}
@@ -0,0 +1,56 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.outerimport;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.Bookmark;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class NetscapeImporterTest {
+
+    @Test
+    void testBookmarksAreHandedOverInBatches() throws IOException {
+        StringBuilder html = new StringBuilder("<DL><p><DT><H3>Dev Tools</H3><DL><p>");
+        for (int i = 0; i < 5; i++) {
+            html.append("<DT><A HREF=\"https://example.com/").append(i).append("\" TAGS=\"Java,Build Tools\">")
+                    .append("Page ").append(i).append("</A>");
+        }
+        html.append("</DL><p><DT><A HREF=\"https://outside.com\">Outside</A></DL>");
+        List<List<Bookmark>> batches = new ArrayList<>();
+
+        int imported = NetscapeImporter.importBookmarks(new StringReader(html.toString()), 2, batches::add);
+
+        assertEquals(6, imported);
+        assertEquals(List.of(2, 2, 2), batches.stream().map(List::size).toList());
+        assertEquals(new Bookmark("Page-0", "https://example.com/0", Set.of("java", "build-tools"), "Dev-Tools"),
+                batches.getFirst().getFirst(), "Names and titles should be single words, tags keywords");
+        assertEquals(new Bookmark("Outside", "https://outside.com", Set.of(), NetscapeImporter.DEFAULT_GROUP_NAME),
+                batches.getLast().getLast());
+    }
+
+    @Test
+    void testOnlyFilesOfTheImportsDirectoryAreResolved() throws IOException {
+        Path imports = Path.of("test", "bg", "sofia", "uni", "fmi", "mjt", "bookmarksmanager", "outerimport");
+
+        assertEquals(imports.resolve("bookmarks.html").toAbsolutePath(),
+                NetscapeImporter.resolveInDirectory(imports, "bookmarks.html"));
+        for (String fileName : List.of("../NetscapeImporterTest.java", "../../../../../../../requests.jsonl",
+                Path.of("/etc/passwd").toAbsolutePath().toString(), ".", " ")) {
+            assertThrows(IllegalArgumentException.class, () -> NetscapeImporter.resolveInDirectory(imports, fileName),
+                    fileName + " should not be read");
+        }
+    }
+
+    @Test
+    void testInvalidBatchSizeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () ->
+                NetscapeImporter.importBookmarks(new StringReader(""), 0, batch -> { }));
+    }
+}
@@ -0,0 +1,84 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.protocol;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FrameDecoderTest {
+
+    @Test
+    void testNextFrameWaitsForTheWholeFrame() throws ProtocolException {
+        FrameDecoder decoder = new FrameDecoder(1024);
+        ByteBuffer frame = FrameCodec.encode("list --group-name Group1");
+
+        decoder.feed(frame.slice(0, 2));
+        assertNull(decoder.nextFrame(), "Header is not complete yet");
+        decoder.feed(frame.slice(2, 10));
+        assertNull(decoder.nextFrame(), "Payload is not complete yet");
+        decoder.feed(frame.slice(12, frame.remaining() - 12));
+        assertEquals("list --group-name Group1", decoder.nextFrame());
+        assertNull(decoder.nextFrame());
+    }
+
+    @Test
+    void testNextFrameSplitsSeveralFramesReceivedAtOnce() throws ProtocolException {
+        FrameDecoder decoder = new FrameDecoder(1024);
+        ByteBuffer first = FrameCodec.encode("login user1 Password1");
+        ByteBuffer second = FrameCodec.encode("list");
+        ByteBuffer both = ByteBuffer.allocate(first.remaining() + second.remaining());
+        both.put(first).put(second).flip();
+
+        decoder.feed(both);
+        assertEquals("login user1 Password1", decoder.nextFrame());
+        assertEquals("list", decoder.nextFrame());
+        assertNull(decoder.nextFrame());
+    }
+
+    @Test
+    void testDecoderGrowsForFramesBiggerThanItsInitialBuffer() throws ProtocolException {
+        String bigMessage = "a".repeat(100_000);
+        FrameDecoder decoder = new FrameDecoder(200_000);
+        decoder.feed(FrameCodec.encode(bigMessage));
+        assertEquals(bigMessage, decoder.nextFrame());
+    }
+
+    @Test
+    void testDecoderThrowsWhenFrameExceedsTheLimit() {
+        FrameDecoder decoder = new FrameDecoder(10);
+        assertThrows(ProtocolException.class, () -> {
+            decoder.feed(FrameCodec.encode("this message is too long"));
+            decoder.nextFrame();
+        });
+    }
+
+    @Test
+    void testReadFrameRejectsFramesOverTheLimitBeforeReadingThem() {
+        //a plain text command of an old client, its first four bytes read as the length
+        var in = Channels.newChannel(new ByteArrayInputStream("list\n".getBytes(StandardCharsets.UTF_8)));
+
+        assertThrows(ProtocolException.class, () -> FrameCodec.readFrame(in, 64 * 1024));
+    }
+
+    @Test
+    void testReadFrameReassemblesWhatWriteFrameSent() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String reply = "Bookmark info: ".repeat(10_000);
+        FrameCodec.writeFrame(Channels.newChannel(out), reply);
+        FrameCodec.writeFrame(Channels.newChannel(out), "second");
+
+        var in = Channels.newChannel(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(reply, FrameCodec.readFrame(in));
+        assertEquals("second", FrameCodec.readFrame(in));
+        assertNull(FrameCodec.readFrame(in), "End of stream between frames is a closed connection");
+    }
+}
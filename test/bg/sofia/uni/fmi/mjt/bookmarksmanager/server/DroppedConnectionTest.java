@@ -0,0 +1,108 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.server;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.BookmarksManager;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.BookmarksManagerAPI;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.command.CommandExecutor;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.finder.BookmarksFinder;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.protocol.FrameCodec;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage.UsersStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DroppedConnectionTest {
+    private static final String TEST_USERS_FILE = "test" + File.separator +
+            "bg" + File.separator + "sofia" + File.separator +
+            "uni" + File.separator + "fmi" + File.separator + "mjt" +
+            File.separator + "bookmarksmanager" + File.separator + "server"
+            + File.separator + "testDroppedUsersFile";
+    private static final String USERNAME = "droppedUser";
+    private static final long WAIT_MILLIS = 5_000;
+
+    private UsersStorage usersStorage;
+    private BookmarksManager manager;
+    private CommandExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        usersStorage = new UsersStorage(new ConcurrentHashMap<>(), TEST_USERS_FILE, Duration.ZERO, Long.MAX_VALUE);
+        manager = new BookmarksManager(new ConcurrentHashMap<>(), usersStorage, new BookmarksFinder());
+        executor = new CommandExecutor(manager);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        manager.getPersistence().close();
+        Files.deleteIfExists(Path.of(TEST_USERS_FILE));
+        Path records = Path.of(TEST_USERS_FILE + "-records");
+        if (Files.isDirectory(records)) {
+            try (Stream<Path> files = Files.list(records)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+        Files.deleteIfExists(records);
+        Files.deleteIfExists(Path.of(BookmarksManagerAPI.GROUP_FILE_PATH + USERNAME));
+        Files.deleteIfExists(Path.of(BookmarksManagerAPI.GROUP_FILE_PATH + USERNAME + ".wal"));
+        ExceptionsLogger.cleanUpLogs();
+    }
+
+    @Test
+    void testReactorsLogOutTheUserOfADroppedConnection() throws Exception {
+        ReactorServer server = new ReactorServer(0, executor, 1, 1, 16);
+        server.start();
+        try {
+            loginAndDrop(server.getPort());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void testVirtualThreadsLogOutTheUserOfADroppedConnection() throws Exception {
+        VirtualThreadServer server = new VirtualThreadServer(0, executor);
+        server.start();
+        try {
+            loginAndDrop(server.getPort());
+        } finally {
+            server.stop();
+        }
+    }
+
+    private void loginAndDrop(int port) throws Exception {
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", port))) {
+            sendAndReceive(channel, "register " + USERNAME + " Passw0rd1");
+            sendAndReceive(channel, "login " + USERNAME + " Passw0rd1");
+            assertEquals(1, manager.getLoggedInUsers().size());
+        } //closed without a disconnect command
+
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (!manager.getLoggedInUsers().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(manager.getLoggedInUsers().isEmpty(), "The user of a dropped connection should be logged out");
+        assertEquals(1, usersStorage.evictUsers(), "The session of a dropped connection should be closed");
+        assertFalse(usersStorage.getUsers().containsKey(USERNAME));
+    }
+
+    private static void sendAndReceive(SocketChannel channel, String request) throws IOException {
+        FrameCodec.writeFrame(channel, request);
+        FrameCodec.readFrame(channel);
+    }
+}
@@ -0,0 +1,135 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.server;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.BookmarksManager;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.Bookmark;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.command.CommandExecutor;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.finder.BookmarksFinder;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.protocol.FrameCodec;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage.UsersStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class ReactorServerLoadTest {
+    private static final long ADD_LATENCY_MILLIS = 300;
+    private static final int CONCURRENT_ADD_CLIENTS = 16;
+    private static final int LIST_REQUESTS = 200;
+    private static final double PERCENTILE = 0.99;
+    //how much slower than on an idle server list may get under load
+    private static final long LOADED_P99_FACTOR = 5;
+    private static final long LOADED_P99_SLACK_MILLIS = 20;
+
+    private ReactorServer server;
+    private BookmarksManager manager;
+
+    //simulates the page fetches and the file rewrite of a real add-to
+    private static class SlowAddManager extends BookmarksManager {
+        SlowAddManager() {
+            super(new ConcurrentHashMap<>(), mock(UsersStorage.class), mock(BookmarksFinder.class));
+        }
+
+        @Override
+        public String addNewBookmarkToGroup(SocketChannel clientChannel, String groupName,
+                                            String url, boolean isShortened) {
+            try {
+                Thread.sleep(ADD_LATENCY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "Successful add of bookmark " + url;
+        }
+
+        @Override
+        public List<Bookmark> listAll(SocketChannel clientChannel) {
+            return List.of();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        manager = new SlowAddManager();
+        server = new ReactorServer(0, new CommandExecutor(manager),
+                2, 4, 1024);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+        manager.getPersistence().close();
+    }
+
+    @Test
+    void testListP99StaysFlatWhileAddsAreRunning() throws Exception {
+        long idleP99 = measureListP99();
+
+        AtomicBoolean isLoadRunning = new AtomicBoolean(true);
+        AtomicInteger answeredAdds = new AtomicInteger();
+        ExecutorService addClients = Executors.newFixedThreadPool(CONCURRENT_ADD_CLIENTS);
+        for (int i = 0; i < CONCURRENT_ADD_CLIENTS; i++) {
+            addClients.execute(() -> {
+                try (SocketChannel channel = connect()) {
+                    while (isLoadRunning.get()) {
+                        sendAndReceive(channel, "add-to Group1 https://example.com");
+                        answeredAdds.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+        Thread.sleep(ADD_LATENCY_MILLIS);
+
+        long loadedP99 = measureListP99();
+        isLoadRunning.set(false);
+        addClients.shutdown();
+        addClients.awaitTermination(ADD_LATENCY_MILLIS * 10, TimeUnit.MILLISECONDS);
+
+        assertTrue(answeredAdds.get() > 0,
+                "The add-to commands should have been running while list was measured");
+        assertTrue(idleP99 < TimeUnit.MILLISECONDS.toNanos(ADD_LATENCY_MILLIS),
+                "list p99 of an idle server: " + idleP99 / 1000 + " us");
+        assertTrue(loadedP99 <= idleP99 * LOADED_P99_FACTOR
+                        + TimeUnit.MILLISECONDS.toNanos(LOADED_P99_SLACK_MILLIS),
+                "list must not wait behind the running add-to commands, p99 idle: " + idleP99 / 1000
+                        + " us, under load: " + loadedP99 / 1000 + " us");
+    }
+
+    private long measureListP99() throws IOException {
+        List<Long> latencies = new ArrayList<>();
+        try (SocketChannel channel = connect()) {
+            for (int i = 0; i < LIST_REQUESTS; i++) {
+                long start = System.nanoTime();
+                sendAndReceive(channel, "list");
+                latencies.add(System.nanoTime() - start);
+            }
+        }
+        Collections.sort(latencies);
+        return latencies.get((int) Math.ceil(PERCENTILE * latencies.size()) - 1);
+    }
+
+    private SocketChannel connect() throws IOException {
+        return SocketChannel.open(new InetSocketAddress("localhost", server.getPort()));
+    }
+
+    private static String sendAndReceive(SocketChannel channel, String message) throws IOException {
+        FrameCodec.writeFrame(channel, message);
+        return FrameCodec.readFrame(channel);
+    }
+}
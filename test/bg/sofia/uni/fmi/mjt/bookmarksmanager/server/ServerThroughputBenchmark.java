@@ -0,0 +1,103 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.server;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.BookmarksManager;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.Bookmark;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.command.CommandExecutor;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.finder.BookmarksFinder;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.protocol.FrameCodec;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage.UsersStorage;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import static org.mockito.Mockito.mock;
+
+//Compares the throughput of the multi-reactor and the virtual-thread server
+//modes when most of the command time is blocking network I/O.
+//Run it with: java ... ServerThroughputBenchmark [clients] [commandsPerClient]
+
+public class ServerThroughputBenchmark {
+    private static final long FETCH_LATENCY_MILLIS = 50;
+    private static final int DEFAULT_CLIENTS = 1000;
+    private static final int DEFAULT_COMMANDS_PER_CLIENT = 10;
+
+    //add-to waits as long as a page fetch would, list answers at once
+    private static class BlockingIoManager extends BookmarksManager {
+        BlockingIoManager() {
+            super(new ConcurrentHashMap<>(), mock(UsersStorage.class), mock(BookmarksFinder.class));
+        }
+
+        @Override
+        public String addNewBookmarkToGroup(SocketChannel clientChannel, String groupName,
+                                            String url, boolean isShortened) {
+            try {
+                Thread.sleep(FETCH_LATENCY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "Successful add of bookmark " + url;
+        }
+
+        @Override
+        public List<Bookmark> listAll(SocketChannel clientChannel) {
+            return List.of();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CLIENTS;
+        int commandsPerClient = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_COMMANDS_PER_CLIENT;
+
+        BookmarksManager reactorManager = new BlockingIoManager();
+        ReactorServer reactorServer = new ReactorServer(0, new CommandExecutor(reactorManager),
+                Runtime.getRuntime().availableProcessors(), 4 * Runtime.getRuntime().availableProcessors(),
+                clients);
+        reactorServer.start();
+        double reactorThroughput = measure(reactorServer::getPort, clients, commandsPerClient);
+        reactorServer.stop();
+        reactorManager.getPersistence().close();
+
+        BookmarksManager virtualThreadsManager = new BlockingIoManager();
+        VirtualThreadServer virtualThreadServer = new VirtualThreadServer(0,
+                new CommandExecutor(virtualThreadsManager));
+        virtualThreadServer.start();
+        double virtualThreadsThroughput = measure(virtualThreadServer::getPort, clients, commandsPerClient);
+        virtualThreadServer.stop();
+        virtualThreadsManager.getPersistence().close();
+
+        System.out.printf("%d clients x %d commands (half add-to with %d ms of blocking I/O)%n",
+                clients, commandsPerClient, FETCH_LATENCY_MILLIS);
+        System.out.printf("multi-reactor:   %.0f commands/s%n", reactorThroughput);
+        System.out.printf("virtual threads: %.0f commands/s%n", virtualThreadsThroughput);
+    }
+
+    private static double measure(IntSupplier port, int clients, int commandsPerClient)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        try (ExecutorService load = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                load.execute(() -> runClient(port.getAsInt(), commandsPerClient));
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        return (double) clients * commandsPerClient / elapsed * TimeUnit.SECONDS.toNanos(1);
+    }
+
+    private static void runClient(int port, int commands) {
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", port))) {
+            for (int i = 0; i < commands; i++) {
+                FrameCodec.writeFrame(channel, i % 2 == 0 ? "add-to Group1 https://example.com" : "list");
+                FrameCodec.readFrame(channel);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.Bookmark;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.BookmarksGroup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+//Shows that an add costs the same with 10k, 100k and 1M bookmarks per user
+//now that it is a log append, next to the cost of the old full-file rewrite.
+//Run it with: java ... BookmarksGroupStorageBenchmark
+
+public class BookmarksGroupStorageBenchmark {
+    private static final int[] STORAGE_SIZES = {10_000, 100_000, 1_000_000};
+    private static final int GROUPS_COUNT = 10;
+    private static final int MEASURED_ADDS = 5_000;
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("bookmarks-benchmark");
+        try {
+            System.out.printf("%12s %18s %22s%n", "bookmarks", "avg add (us)", "full rewrite (ms)");
+            for (int size : STORAGE_SIZES) {
+                String fileName = directory.resolve("groups-" + size).toString();
+                BookmarksGroupStorage storage = new BookmarksGroupStorage(populate(size), fileName);
+
+                addBookmarks(storage, "warmup", MEASURED_ADDS);
+                long start = System.nanoTime();
+                addBookmarks(storage, "measured", MEASURED_ADDS);
+                long addNanos = (System.nanoTime() - start) / MEASURED_ADDS;
+
+                start = System.nanoTime();
+                storage.updateGroupsFile();
+                long rewriteNanos = System.nanoTime() - start;
+
+                System.out.printf("%12d %18.2f %22d%n", size, addNanos / 1000.0,
+                        TimeUnit.NANOSECONDS.toMillis(rewriteNanos));
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static Map<String, BookmarksGroup> populate(int size) {
+        Map<String, BookmarksGroup> groups = new ConcurrentHashMap<>();
+        for (int i = 0; i < GROUPS_COUNT; i++) {
+            groups.put("Group" + i, new BookmarksGroup("Group" + i, new ConcurrentHashMap<>()));
+        }
+        for (int i = 0; i < size; i++) {
+            String groupName = "Group" + (i % GROUPS_COUNT);
+            groups.get(groupName).addNewBookmark(bookmark("existing" + i, groupName));
+        }
+        return groups;
+    }
+
+    private static void addBookmarks(BookmarksGroupStorage storage, String prefix, int count) {
+        for (int i = 0; i < count; i++) {
+            String groupName = "Group" + (i % GROUPS_COUNT);
+            storage.addNewBookmarkToGroup(bookmark(prefix + i, groupName), groupName);
+        }
+    }
+
+    private static Bookmark bookmark(String title, String groupName) {
+        return new Bookmark(title, "https://example.com/" + title,
+                Set.of("java", "course", "bookmark"), groupName);
+    }
+}
@@ -6,27 +6,33 @@ import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.GroupAlreadyExistsExcept
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.NoSuchBookmarkException;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.NoSuchGroupException;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.linkcheck.LinkProber;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.outerimport.ImportProgress;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer.HtmlTokenizer;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.sun.net.httpserver.HttpServer;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.MockedStatic;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.Mockito.*;
 
 
 class BookmarksGroupStorageTest {
@@ -58,6 +64,7 @@ class BookmarksGroupStorageTest {
     void cleanUp() throws IOException {
         Path path = Path.of(TEST_FILE_NAME);
         Files.deleteIfExists(path);
+        Files.deleteIfExists(Path.of(TEST_FILE_NAME + ".wal"));
        ExceptionsLogger.cleanUpLogs();
     }
 
@@ -152,6 +159,17 @@ class BookmarksGroupStorageTest {
                         "inexisting bookmark from a group.");
     }
 
+    @Test
+    void testAddBookmarkOfAPageThatCanNotBeFetched() {
+        String url = "http://localhost:1/unreachable";
+        Bookmark bookmark = Bookmark.of(url, "Group1", false, new HtmlTokenizer(Set.of("the")));
+        bookmarksGroupStorage.addNewBookmarkToGroup(bookmark, "Group1");
+
+        assertEquals(new Bookmark(url, url, Set.of(), "Group1"), bookmark,
+                "The url should stand for the title of a page that can not be fetched");
+        assertTrue(bookmarksGroupStorage.getGroups().get("Group1").contains(bookmark));
+    }
+
     @Test
     void testRemoveBookmarkFromGroupSuccessfully() {
         bookmarksGroupStorage.removeBookmarkFromGroup("Ozone", "Group1");
@@ -161,37 +179,33 @@ class BookmarksGroupStorageTest {
 
     @Test
     void testCleanUpInvalidBookmark() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(exchange.getRequestURI().getPath().contains("/nonexistentpage")
+                    ? 404 : 200, -1);
+            exchange.close();
+        });
+        server.start();
+        String site = "http://localhost:" + server.getAddress().getPort();
+
         Bookmark invalidBookmark = new Bookmark("Invalid",
-                "https://example.com/nonexistentpage",
+                site + "/nonexistentpage",
                 Set.of("noExistent"), "Group1");
+        Bookmark validBookmark = new Bookmark("Valid", site + "/page",
+                Set.of("existent"), "Group1");
         bookmarksGroupStorage.addNewBookmarkToGroup(invalidBookmark, "Group1");
-        try (MockedStatic<HttpClient> httpClientStatic = mockStatic(HttpClient.class)) {
-            HttpClient.Builder builder = mock(HttpClient.Builder.class);
-            HttpClient client = mock(HttpClient.class);
-
-            HttpResponse<String> resp404 = (HttpResponse<String>) mock(HttpResponse.class);
-            when(resp404.statusCode()).thenReturn(404);
-
-            HttpResponse<String> resp200 = (HttpResponse<String>) mock(HttpResponse.class);
-            when(resp200.statusCode()).thenReturn(200);
-            when(HttpClient.newBuilder()).thenReturn(builder);
-            when(builder.executor(any())).thenReturn(builder);
-            when(builder.version(any())).thenReturn(builder);
-            when(builder.build()).thenReturn(client);
-
-            when(client.send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
-                    .thenAnswer(inv -> {
-                        HttpRequest req = inv.getArgument(0);
-                        if (req != null && req.uri().toString().contains("/nonexistentpage")) {
-                            return resp404;
-                        }
-                        return resp200;
-                    });
-
-            bookmarksGroupStorage.cleanUp();
+        bookmarksGroupStorage.addNewBookmarkToGroup(validBookmark, "Group1");
+        try (LinkProber prober = new LinkProber(4, 2, Duration.ofSeconds(2))) {
+            List<Bookmark> removed = bookmarksGroupStorage.cleanUp(prober);
+            assertTrue(removed.contains(invalidBookmark));
+            assertFalse(removed.contains(validBookmark));
+        } finally {
+            server.stop(0);
         }
         assertFalse(bookmarksGroupStorage.getGroups()
                 .get("Group1").containsBookmark("Invalid"));
+        assertTrue(bookmarksGroupStorage.getGroups()
+                .get("Group1").containsBookmark("Valid"));
     }
 
     @Test
@@ -224,4 +238,106 @@ class BookmarksGroupStorageTest {
                 "BookmarksGroupStorage should contain " +
                         "the same bookmark after reading it from file.");
        }
+
+    @Test
+    void testMutationsAreRestoredFromSnapshotAndLog() {
+        Bookmark github = new Bookmark("Github", "https://github.com/",
+                Set.of("github", "branch", "commit"), "DevOps");
+        bookmarksGroupStorage.updateGroupsFile();
+        bookmarksGroupStorage.createNewGroup("DevOps");
+        bookmarksGroupStorage.addNewBookmarkToGroup(github, "DevOps");
+        bookmarksGroupStorage.removeBookmarkFromGroup("Ozone", "Group1");
+        bookmarksGroupStorage.flush();
+
+        BookmarksGroupStorage restored = new BookmarksGroupStorage(TEST_FILE_NAME);
+        assertTrue(restored.getGroups().get("DevOps").containsBookmark("Github"),
+                "Bookmark added after the snapshot should be replayed from the log");
+        assertFalse(restored.getGroups().get("Group1").containsBookmark("Ozone"),
+                "Bookmark removed after the snapshot should stay removed");
+    }
+
+    @Test
+    void testAddBookmarksCreatesTheMissingGroupsAndSkipsTakenTitles() {
+        Bookmark github = new Bookmark("Github", "https://github.com/", Set.of("git"), "DevOps");
+        Bookmark takenTitle = new Bookmark("Ozone", "https://ozone.example/", Set.of(), "Group1");
+        Bookmark docs = new Bookmark("Docs", "https://docs.oracle.com/", Set.of(), "Group1");
+
+        List<Bookmark> added = bookmarksGroupStorage.addBookmarks(List.of(github, takenTitle, docs, github));
+
+        assertEquals(List.of(github, docs), added);
+        assertEquals("https://www.ozone.bg/", bookmarksGroupStorage.getGroups().get("Group1")
+                .getBookmarks().stream().filter(bookmark -> bookmark.title().equals("Ozone"))
+                .findFirst().orElseThrow().url(), "A stored bookmark should not be overwritten");
+        BookmarksGroupStorage restored = new BookmarksGroupStorage(TEST_FILE_NAME);
+        assertTrue(restored.getGroups().get("DevOps").contains(github),
+                "A batch should be in the log once it has been added");
+        assertTrue(restored.getGroups().get("Group1").contains(docs));
+    }
+
+    @Test
+    void testReplaceBookmarkSwapsOnlyAStillStoredBookmark() {
+        Bookmark pending = Bookmark.unenriched("https://github.com/", "Group1", false);
+        Bookmark enriched = new Bookmark("Github", "https://github.com/", Set.of("github"), "Group1");
+        bookmarksGroupStorage.addNewBookmarkToGroup(pending, "Group1");
+
+        assertTrue(bookmarksGroupStorage.replaceBookmark("Group1", pending, enriched));
+        assertTrue(bookmarksGroupStorage.getGroups().get("Group1").contains(enriched));
+        assertFalse(bookmarksGroupStorage.getGroups().get("Group1").contains(pending));
+        assertFalse(bookmarksGroupStorage.replaceBookmark("Group1", pending, enriched),
+                "A bookmark removed meanwhile should not be brought back");
+
+        bookmarksGroupStorage.flush();
+        assertTrue(new BookmarksGroupStorage(TEST_FILE_NAME).getGroups().get("Group1").contains(enriched));
+    }
+
+    @Test
+    void testChromeReimportAppliesOnlyTheChangesAndSurvivesARestart() throws IOException {
+        String originalOs = System.getProperty("os.name");
+        String originalHome = System.getProperty("user.home");
+        Path chromeHome = Path.of(TEST_FILE_NAME + "-chrome");
+        Path chromeFile = chromeHome.resolve(Path.of(".config", "google-chrome", "Default", "Bookmarks"));
+        //the pages cannot be fetched, the bookmarks are imported without keywords
+        String bookmarks = """
+            { "roots": { "bookmark_bar": { "children": [
+                { "guid": "g1", "date_added": "1", "name": "Docs", "type": "url", "url": "http://localhost:1/docs" },
+                { "guid": "g2", "date_added": "2", "name": "Blog", "type": "url", "url": "http://localhost:1/blog" }
+            ]}}}
+            """;
+        try {
+            System.setProperty("os.name", "Linux");
+            System.setProperty("user.home", chromeHome.toString());
+            Files.createDirectories(chromeFile.getParent());
+            Files.writeString(chromeFile, bookmarks);
+            HtmlTokenizer tokenizer = new HtmlTokenizer(Set.of("the"));
+
+            assertEquals(2, bookmarksGroupStorage.importBookmarksFromChrome(tokenizer).size());
+            BookmarksGroupStorage restored = new BookmarksGroupStorage(TEST_FILE_NAME);
+            assertEquals(2, restored.getChromeImportState().bookmarks().size(),
+                    "What has been imported should be written with the groups");
+            assertTrue(restored.importBookmarksFromChrome(tokenizer).isEmpty());
+
+            Files.writeString(chromeFile, bookmarks.replace("\"Blog\"", "\"Tech blog\""));
+            ImportReport report = restored.importBookmarksFromChrome(tokenizer, new ImportProgress());
+            assertEquals(List.of("Tech blog"), report.imported().stream().map(Bookmark::title).toList());
+            assertEquals(List.of("Blog"), report.removed().stream().map(Bookmark::title).toList());
+            assertEquals(2, restored.getGroups().get("bookmark_bar").getBookmarks().size());
+
+            restored.removeBookmarkFromGroup("Docs", "bookmark_bar");
+            Files.writeString(chromeFile, bookmarks.replace("\"Blog\"", "\"Tech blog\"")
+                    .replace("\"Docs\"", "\"Manuals\""));
+            ImportReport afterRemoval = restored.importBookmarksFromChrome(tokenizer, new ImportProgress());
+            assertTrue(afterRemoval.imported().isEmpty(),
+                    "A bookmark the user has removed should not come back when it changes in Chrome");
+            assertEquals(Set.of("Tech blog"), restored.getGroups().get("bookmark_bar").getBookmarks().stream()
+                    .map(Bookmark::title).collect(Collectors.toSet()));
+        } finally {
+            System.setProperty("os.name", originalOs);
+            System.setProperty("user.home", originalHome);
+            try (Stream<Path> files = Files.walk(chromeHome)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,182 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.Bookmark;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.linkcheck.LinkHealthCache;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.linkcheck.LinkProber;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.user.User;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CleanupSchedulerTest {
+    private static final String TEST_DIRECTORY = "test" + File.separator +
+            "bg" + File.separator + "sofia" + File.separator +
+            "uni" + File.separator + "fmi" + File.separator + "mjt" +
+            File.separator + "bookmarksmanager" + File.separator + "server"
+            + File.separator + "storage" + File.separator;
+    private static final String TEST_GROUPS_FILE = TEST_DIRECTORY + "testCleanupGroupsFile-";
+    private static final String TEST_USERS_FILE = TEST_DIRECTORY + "testCleanupUsersFile.dat";
+    private static final String TEST_STATE_FILE = TEST_DIRECTORY + "testCleanupState";
+    private static final Duration LONG_INTERVAL = Duration.ofHours(1);
+    private static final long WAIT_MILLIS = 5_000;
+
+    private HttpServer server;
+    private UsersStorage usersStorage;
+    private LinkProber prober;
+    private final AtomicInteger probesCount = new AtomicInteger();
+    private final List<List<Bookmark>> removedBatches = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                probesCount.incrementAndGet(); //the dead links are tried with a GET as well
+            }
+            String path = exchange.getRequestURI().getPath();
+            int statusCode = path.startsWith("/dead") ? 404 : path.startsWith("/down") ? 503 : 200;
+            exchange.sendResponseHeaders(statusCode, -1);
+            exchange.close();
+        });
+        server.start();
+        usersStorage = new UsersStorage(new ConcurrentHashMap<>(), TEST_USERS_FILE);
+        prober = new LinkProber(4, 2, Duration.ofSeconds(2));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        prober.close();
+        server.stop(0);
+        for (String username : List.of("user1", "userA", "userB")) {
+            Files.deleteIfExists(Path.of(TEST_GROUPS_FILE + username));
+            Files.deleteIfExists(Path.of(TEST_GROUPS_FILE + username + ".wal"));
+        }
+        Files.deleteIfExists(Path.of(TEST_USERS_FILE));
+        Files.deleteIfExists(Path.of(TEST_STATE_FILE));
+        ExceptionsLogger.cleanUpLogs();
+    }
+
+    @Test
+    void testBatchesRemoveTheDeadLinksAndResumeAfterARestart() {
+        User user = addUser("user1", "/ok/1", "/ok/2", "/dead/3", "/ok/4", "/dead/5");
+        CleanupScheduler scheduler = newScheduler();
+        scheduler.runBatch();
+
+        CleanupReport report = scheduler.getReport("user1");
+        assertEquals(2, report.checkedLinks());
+        assertEquals(5, report.totalLinks());
+        assertEquals(2, report.removedBookmarks().size(), "Both dead links sort first");
+        assertFalse(report.isFinished());
+        assertEquals(1, removedBatches.size(), "The removals of one batch should be reported together");
+        assertEquals(3, user.getStorage().getBookmarksCount());
+        scheduler.close();
+
+        CleanupScheduler restarted = newScheduler();
+        restarted.runBatch();
+        assertEquals(2, restarted.getReport("user1").checkedLinks(), "The pass should resume after the cursor");
+        assertEquals(3, restarted.getReport("user1").totalLinks());
+        restarted.runBatch();
+        assertTrue(restarted.getReport("user1").isFinished());
+        assertEquals(5, probesCount.get(), "Every link should be probed once in a pass");
+        assertEquals(1, removedBatches.size(), "There should be no other removals");
+        restarted.close();
+    }
+
+    @Test
+    void testPriorityPassGoesAheadOfTheOtherUsers() throws InterruptedException {
+        addUser("userA", "/ok/a");
+        addUser("userB", "/dead/b");
+        CleanupScheduler scheduler = newScheduler();
+        scheduler.requestPriorityPass("userB");
+
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (scheduler.isPriorityPassPending("userB") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        CleanupReport report = scheduler.getReport("userB");
+        assertNotNull(report, "The priority pass should not wait for the next interval");
+        assertTrue(report.isFinished());
+        assertEquals("userB", report.removedBookmarks().getFirst().title());
+        assertNull(scheduler.getReport("userA"), "userA comes first only in the round-robin order");
+        scheduler.close();
+    }
+
+    @Test
+    void testLinksThatCanNotBeReachedAreNotRemovedOnTheirFirstFailure() {
+        User user = addUser("user1", "/down/1");
+        user.getStorage().addNewBookmarkToGroup(new Bookmark("unreachable", "http://localhost:1/",
+                Set.of(), "Group1"), "Group1");
+        CleanupScheduler scheduler = newScheduler();
+        scheduler.runBatch();
+
+        assertTrue(scheduler.getReport("user1").isFinished());
+        assertTrue(removedBatches.isEmpty(), "Failed probes and server errors should not remove links");
+        assertEquals(2, user.getStorage().getBookmarksCount());
+        scheduler.close();
+    }
+
+    @Test
+    void testLinksFailingInSeveralPassesAreRemoved() throws InterruptedException {
+        Duration failureTtl = Duration.ofMillis(1);
+        prober.close();
+        prober = new LinkProber(4, 2, Duration.ofSeconds(2), new LinkHealthCache(null,
+                Duration.ofHours(1), failureTtl, 10, Clock.systemUTC()));
+        User user = addUser("user1", "/down/1", "/ok/2");
+        CleanupScheduler scheduler = newScheduler();
+
+        for (int pass = 1; pass < CleanupScheduler.FAILURES_BEFORE_REMOVAL; pass++) {
+            scheduler.runBatch();
+            Thread.sleep(failureTtl.toMillis() + 1);
+        }
+        assertTrue(removedBatches.isEmpty());
+        scheduler.runBatch();
+
+        assertEquals(1, removedBatches.size(), "The link should be removed after failing in every pass");
+        assertEquals("/down/1", removedBatches.getFirst().getFirst().title());
+        assertEquals(1, user.getStorage().getBookmarksCount());
+        scheduler.close();
+    }
+
+    private CleanupScheduler newScheduler() {
+        return new CleanupScheduler(usersStorage, prober, (user, removed) -> {
+            synchronized (removedBatches) {
+                removedBatches.add(removed);
+            }
+        }, TEST_STATE_FILE, 2, LONG_INTERVAL);
+    }
+
+    private User addUser(String username, String... paths) {
+        BookmarksGroupStorage storage = new BookmarksGroupStorage(TEST_GROUPS_FILE + username);
+        storage.createNewGroup("Group1");
+        String site = "http://localhost:" + server.getAddress().getPort();
+        for (String path : paths) {
+            String title = path.endsWith("/b") ? username : path;
+            storage.addNewBookmarkToGroup(new Bookmark(title, site + path, Set.of(), "Group1"), "Group1");
+        }
+        User user = new User(username, "Passw0rd", storage);
+        usersStorage.getUsers().put(username, user);
+        return user;
+    }
+}
@@ -0,0 +1,97 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.Bookmark;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.user.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PersistenceSchedulerTest {
+    private static final String TEST_DIRECTORY = "test" + File.separator +
+            "bg" + File.separator + "sofia" + File.separator +
+            "uni" + File.separator + "fmi" + File.separator + "mjt" +
+            File.separator + "bookmarksmanager" + File.separator + "server"
+            + File.separator + "storage" + File.separator;
+    private static final String TEST_GROUPS_FILE = TEST_DIRECTORY + "testSchedulerGroupsFile.txt";
+    private static final String TEST_USERS_FILE = TEST_DIRECTORY + "testSchedulerUsersFile.dat";
+    private static final Duration LONG_WINDOW = Duration.ofHours(1);
+    private static final long WAIT_MILLIS = 2_000;
+
+    private BookmarksGroupStorage groupStorage;
+    private UsersStorage usersStorage;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        groupStorage = new BookmarksGroupStorage(TEST_GROUPS_FILE);
+        groupStorage.createNewGroup("Group1");
+        usersStorage = new UsersStorage(new ConcurrentHashMap<>(), TEST_USERS_FILE);
+        user = new User("user1", "userPassword1", groupStorage);
+        usersStorage.getUsers().put("user1", user);
+    }
+
+    @AfterEach
+    void cleanUp() throws IOException {
+        Files.deleteIfExists(Path.of(TEST_GROUPS_FILE));
+        Files.deleteIfExists(Path.of(TEST_GROUPS_FILE + ".wal"));
+        Files.deleteIfExists(Path.of(TEST_USERS_FILE));
+        Files.deleteIfExists(Path.of(TEST_USERS_FILE + "-records", "user1.user"));
+        Files.deleteIfExists(Path.of(TEST_USERS_FILE + "-records"));
+        ExceptionsLogger.cleanUpLogs();
+    }
+
+    @Test
+    void testMutationsInOneWindowAreCoalescedAndFlushedOnClose() {
+        PersistenceScheduler scheduler = new PersistenceScheduler(usersStorage, LONG_WINDOW, 1_000);
+        for (int i = 0; i < 100; i++) {
+            groupStorage.addNewBookmarkToGroup(bookmark("title" + i), "Group1");
+            scheduler.markDirty(groupStorage);
+        }
+        scheduler.markDirty(user);
+        scheduler.markDirty(user);
+        scheduler.close();
+
+        assertEquals(2, scheduler.getPerformedWrites(),
+                "One write of the group storage and one of the users are expected");
+        assertEquals(100, scheduler.getCoalescedWrites(),
+                "The other mutations should have been coalesced");
+        assertEquals(0, scheduler.getDirtyCount(), "Close should flush everything");
+        assertEquals(100, new BookmarksGroupStorage(TEST_GROUPS_FILE).getGroups().get("Group1").size(),
+                "Flushed mutations should be restored from disk");
+        assertTrue(new UsersStorage(TEST_USERS_FILE).isARegisteredUser("user1"),
+                "Dirty users should be saved on close");
+    }
+
+    @Test
+    void testReachingMaxPendingOperationsFlushesBeforeTheWindowEnds() throws InterruptedException {
+        PersistenceScheduler scheduler = new PersistenceScheduler(usersStorage, LONG_WINDOW, 10);
+        for (int i = 0; i < 10; i++) {
+            scheduler.markDirty(groupStorage);
+        }
+
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (scheduler.getPerformedWrites() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, scheduler.getPerformedWrites(),
+                "The dirty storage should be flushed once enough operations pile up");
+        assertEquals(9, scheduler.getCoalescedWrites());
+        scheduler.close();
+    }
+
+    private static Bookmark bookmark(String title) {
+        return new Bookmark(title, "https://example.com/" + title, Set.of("example"), "Group1");
+    }
+}
@@ -1,9 +1,12 @@
 package bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage;
 
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.BookmarksManagerAPI;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.Bookmark;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.UserAlreadyExistsException;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
 import bg.sofia.uni.fmi.mjt.bookmarksmanager.user.User;
 import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeAll;
 import org.mockito.Mockito;
@@ -11,8 +14,17 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -24,6 +36,31 @@ class UsersStorageTest {
             File.separator + "bookmarksmanager" + File.separator + "server"
             + File.separator + "storage" + File.separator + "testUsersFile.dat";
 
+    private static final String TEST_FILE_REGISTRY = "test" + File.separator +
+            "bg" + File.separator + "sofia" + File.separator +
+            "uni" + File.separator + "fmi" + File.separator + "mjt" +
+            File.separator + "bookmarksmanager" + File.separator + "server"
+            + File.separator + "storage" + File.separator + "testRegistryFile.dat";
+
+    //the users file of the first version - the users serialized one after the other -
+    //with legacyUser1 having the DevOps group and legacyUser2 having no groups
+    private static final String LEGACY_USERS_FILE = "rO0ABXNyAC9iZy5zb2ZpYS51bmkuZm1pLm1qdC5ib29rbWFya3NtYW5hZ2VyLnVzZXIuVXNlcm6ZBwzo"
+            + "R38uAgADTAAIcGFzc3dvcmR0ABJMamF2YS9sYW5nL1N0cmluZztMAAdzdG9yYWdldABMTGJnL3NvZmlh"
+            + "L3VuaS9mbWkvbWp0L2Jvb2ttYXJrc21hbmFnZXIvc2VydmVyL3N0b3JhZ2UvQm9va21hcmtzR3JvdXBT"
+            + "dG9yYWdlO0wACHVzZXJuYW1lcQB+AAF4cHQACVBhc3N3b3JkMnNyAEpiZy5zb2ZpYS51bmkuZm1pLm1q"
+            + "dC5ib29rbWFya3NtYW5hZ2VyLnNlcnZlci5zdG9yYWdlLkJvb2ttYXJrc0dyb3VwU3RvcmFnZTwqQPxL"
+            + "Ky63AgABTAAGZ3JvdXBzdAAPTGphdmEvdXRpbC9NYXA7eHBzcgARamF2YS51dGlsLkhhc2hNYXAFB9rB"
+            + "wxZg0QMAAkYACmxvYWRGYWN0b3JJAAl0aHJlc2hvbGR4cD9AAAAAAAAAdwgAAAAQAAAAAHh0AAtsZWdh"
+            + "Y3lVc2VyMnNxAH4AAHQACVBhc3N3b3JkMXNxAH4ABXNxAH4ACD9AAAAAAAAMdwgAAAAQAAAAAXQABkRl"
+            + "dk9wc3NyAD1iZy5zb2ZpYS51bmkuZm1pLm1qdC5ib29rbWFya3NtYW5hZ2VyLmJvb2ttYXJrLkJvb2tt"
+            + "YXJrc0dyb3Vw0k5U/1BBiNYCAAJMAAlib29rbWFya3NxAH4ABkwACWdyb3VwTmFtZXEAfgABeHBzcQB+"
+            + "AAg/QAAAAAAADHcIAAAAEAAAAAF0AAZHaXRodWJzcgA3Ymcuc29maWEudW5pLmZtaS5tanQuYm9va21h"
+            + "cmtzbWFuYWdlci5ib29rbWFyay5Cb29rbWFyawAAAAAAAAAAAgAETAAJZ3JvdXBOYW1lcQB+AAFMAAhr"
+            + "ZXl3b3Jkc3QAD0xqYXZhL3V0aWwvU2V0O0wABXRpdGxlcQB+AAFMAAN1cmxxAH4AAXhwcQB+AA9zcgAR"
+            + "amF2YS51dGlsLkNvbGxTZXJXjqu2OhuoEQMAAUkAA3RhZ3hwAAAAAncEAAAAAnQABmdpdGh1YnQABmNv"
+            + "bW1pdHhxAH4AE3QAE2h0dHBzOi8vZ2l0aHViLmNvbS94cQB+AA94dAALbGVnYWN5VXNlcjE=";
+    private static final List<String> LEGACY_USERNAMES = List.of("legacyUser1", "legacyUser2");
+
 
     private static UsersStorage storage = new UsersStorage(TEST_FILE_USERS);
 
@@ -37,9 +74,15 @@ class UsersStorageTest {
     static void cleanUp() throws IOException {
         Path path = Path.of(TEST_FILE_USERS);
         Files.deleteIfExists(path);
+        deleteRegistry(TEST_FILE_USERS);
         ExceptionsLogger.cleanUpLogs();
     }
 
+    @AfterEach
+    void deleteTestRegistry() throws IOException {
+        deleteRegistry(TEST_FILE_REGISTRY);
+    }
+
     @Test
     void testRegisterInvalidUsername() {
         String expectedResult = "Username/password " +
@@ -99,9 +142,150 @@ class UsersStorageTest {
         UsersStorage actualStorage = new UsersStorage(TEST_FILE_USERS);
         assertTrue(actualStorage.isARegisteredUser("newUser1"));
         assertTrue(actualStorage.isARegisteredUser("newUser2"));
-        assertTrue(actualStorage.getUsers().get("newUser1").
+        assertTrue(actualStorage.getUser("newUser1").
                 validatePassword("newUserPasswd1"));
-        assertTrue(actualStorage.getUsers().get("newUser2").
+        assertTrue(actualStorage.getUser("newUser2").
                 validatePassword("newUserPasswd2"));
     }
+
+    @Test
+    void testSaveUsersWritesOnlyTheChangedUsers() throws IOException {
+        User first = new User("first", "firstPasswd1",
+                new BookmarksGroupStorage(TEST_FILE_REGISTRY + "-groups-first"));
+        User second = new User("second", "secondPasswd2",
+                new BookmarksGroupStorage(TEST_FILE_REGISTRY + "-groups-second"));
+        UsersStorage registry = new UsersStorage(new ConcurrentHashMap<>(), TEST_FILE_REGISTRY);
+        registry.saveUsers(List.of(first, second));
+
+        Path secondRecord = Path.of(TEST_FILE_REGISTRY + "-records", "second.user");
+        Files.setLastModifiedTime(secondRecord, FileTime.fromMillis(0));
+        registry.saveUsers(List.of(first));
+        assertEquals(FileTime.fromMillis(0), Files.getLastModifiedTime(secondRecord),
+                "Saving a user should not rewrite the records of the others");
+
+        UsersStorage reloaded = new UsersStorage(TEST_FILE_REGISTRY);
+        assertTrue(reloaded.isARegisteredUser("first"));
+        assertTrue(reloaded.isARegisteredUser("second"));
+        assertTrue(reloaded.getUsers().isEmpty(), "Startup should read the index only");
+        assertTrue(reloaded.getUser("first").validatePassword("firstPasswd1"));
+        assertEquals(1, reloaded.getUsers().size(), "Only the requested record should be loaded");
+    }
+
+    @Test
+    void testIdleUsersWithoutSessionsAreEvictedAndReloadedOnDemand() throws IOException {
+        UsersStorage registry = registryOfTwoUsers(Duration.ZERO, Long.MAX_VALUE);
+        registry.openSession("first");
+
+        assertEquals(1, registry.evictUsers(), "Only the user without a session should be evicted");
+        assertTrue(registry.getUsers().containsKey("first"));
+        assertFalse(registry.getUsers().containsKey("second"));
+
+        assertTrue(registry.getUser("second").getStorage().getGroups().containsKey("Group1"),
+                "An evicted user should be loaded again with their groups");
+        ResidentUsersStats stats = registry.getResidentUsersStats();
+        assertEquals(2, stats.residentUsers());
+        assertEquals(1, stats.evictedUsers());
+        assertEquals(1, stats.loadedUsers());
+    }
+
+    @Test
+    void testLeastRecentlyUsedUsersAreEvictedOverTheHeapBudget() throws IOException {
+        UsersStorage registry = registryOfTwoUsers(Duration.ofHours(1), 1024);
+        registry.getUser("second");
+        registry.getUser("first");
+
+        assertEquals(1, registry.evictUsers());
+        assertTrue(registry.getUsers().containsKey("first"),
+                "The most recently used user should stay resident");
+        assertFalse(registry.getUsers().containsKey("second"));
+    }
+
+    @Test
+    void testUsersThatCanNotBeSavedStayResidentUntilTheNextEviction() throws IOException {
+        Map<String, User> unsavedUsers = new ConcurrentHashMap<>();
+        for (String username : List.of("first", "second")) {
+            unsavedUsers.put(username, new User(username, username + "Passwd1",
+                    new BookmarksGroupStorage(TEST_FILE_REGISTRY + "-groups-" + username)));
+        }
+        UsersStorage registry = new UsersStorage(unsavedUsers, TEST_FILE_REGISTRY, Duration.ZERO, 0);
+        Path records = Path.of(TEST_FILE_REGISTRY + "-records");
+        Files.createFile(records); //the records directory can not be created
+
+        assertEquals(0, registry.evictUsers(), "Users whose records can not be written should not be evicted");
+        assertEquals(Set.of("first", "second"), registry.getUsers().keySet());
+
+        Files.delete(records);
+        assertEquals(2, registry.evictUsers(), "The eviction should be retried once the records can be written");
+        assertTrue(registry.getUsers().isEmpty());
+        assertNotNull(registry.getUser("second"));
+    }
+
+    @Test
+    void testUsersFileOfTheFirstVersionIsMigrated() throws IOException {
+        Files.write(Path.of(TEST_FILE_REGISTRY), Base64.getDecoder().decode(LEGACY_USERS_FILE));
+
+        try {
+            UsersStorage migrated = new UsersStorage(TEST_FILE_REGISTRY);
+            assertEquals(new TreeSet<>(LEGACY_USERNAMES), migrated.getRegisteredUsernames());
+            assertTrue(migrated.getUser("legacyUser1").validatePassword("Password1"));
+            BookmarksGroupStorage groups = migrated.getUser("legacyUser1").getStorage();
+            assertEquals(BookmarksManagerAPI.GROUP_FILE_PATH + "legacyUser1", groups.getFileName(),
+                    "The groups file should be the one register gives the user");
+            assertTrue(groups.getGroups().get("DevOps").getBookmarks().stream()
+                    .anyMatch(bookmark -> bookmark.title().equals("Github")));
+
+            UsersStorage reloaded = new UsersStorage(TEST_FILE_REGISTRY);
+            assertEquals(new TreeSet<>(LEGACY_USERNAMES), reloaded.getRegisteredUsernames(),
+                    "The migrated users file should be read without migrating it again");
+            assertTrue(reloaded.getUser("legacyUser1").getStorage().getGroups().containsKey("DevOps"));
+            assertTrue(reloaded.getUser("legacyUser2").getStorage().getGroups().isEmpty());
+        } finally {
+            for (String username : LEGACY_USERNAMES) {
+                Files.deleteIfExists(Path.of(BookmarksManagerAPI.GROUP_FILE_PATH + username));
+                Files.deleteIfExists(Path.of(BookmarksManagerAPI.GROUP_FILE_PATH + username + ".wal"));
+            }
+        }
+    }
+
+    @Test
+    void testUnreadableUsersFileStopsTheStartup() throws IOException {
+        byte[] legacyFile = Base64.getDecoder().decode(LEGACY_USERS_FILE);
+        Files.write(Path.of(TEST_FILE_REGISTRY), Arrays.copyOf(legacyFile, legacyFile.length / 2));
+
+        assertThrows(IllegalStateException.class, () -> new UsersStorage(TEST_FILE_REGISTRY),
+                "A users file that can not be read should not be replaced by an empty one");
+    }
+
+    private static UsersStorage registryOfTwoUsers(Duration maxIdleTime, long bytesBudget) {
+        UsersStorage registry = new UsersStorage(new ConcurrentHashMap<>(), TEST_FILE_REGISTRY,
+                maxIdleTime, bytesBudget);
+        for (String username : List.of("first", "second")) {
+            BookmarksGroupStorage groups = new BookmarksGroupStorage(TEST_FILE_REGISTRY + "-groups-" + username);
+            groups.createNewGroup("Group1");
+            groups.addNewBookmarkToGroup(new Bookmark(username, "https://example.com/" + username,
+                    Set.of("example"), "Group1"), "Group1");
+            registry.getUsers().put(username, new User(username, username + "Passwd1", groups));
+        }
+        registry.saveUsers();
+        registry.getUser("first");
+        registry.getUser("second");
+        return registry;
+    }
+
+    private static void deleteRegistry(String fileName) throws IOException {
+        Files.deleteIfExists(Path.of(fileName));
+        Path records = Path.of(fileName + "-records");
+        if (Files.isDirectory(records)) {
+            try (Stream<Path> files = Files.list(records)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+        Files.deleteIfExists(records);
+        for (String username : List.of("first", "second")) {
+            Files.deleteIfExists(Path.of(fileName + "-groups-" + username));
+            Files.deleteIfExists(Path.of(fileName + "-groups-" + username + ".wal"));
+        }
+    }
 }
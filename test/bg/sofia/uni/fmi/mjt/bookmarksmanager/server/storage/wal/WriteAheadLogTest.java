@@ -0,0 +1,129 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.server.storage.wal;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.bookmark.Bookmark;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class WriteAheadLogTest {
+    private static final Path TEST_LOG = Path.of("test" + File.separator +
+            "bg" + File.separator + "sofia" + File.separator +
+            "uni" + File.separator + "fmi" + File.separator + "mjt" +
+            File.separator + "bookmarksmanager" + File.separator + "server"
+            + File.separator + "storage" + File.separator + "testLog.wal");
+
+    private final Bookmark bookmark = new Bookmark("Github", "https://github.com/",
+            Set.of("github", "branch", "commit"), "DevOps");
+
+    @AfterEach
+    void cleanUp() throws IOException {
+        Files.deleteIfExists(TEST_LOG);
+        ExceptionsLogger.cleanUpLogs();
+    }
+
+    @Test
+    void testReplayReturnsRecordsInAppendOrder() throws IOException {
+        try (WriteAheadLog log = new WriteAheadLog(TEST_LOG, FsyncPolicy.PER_OPERATION)) {
+            log.append(WalRecord.createGroup("DevOps"));
+            log.append(WalRecord.addBookmark("DevOps", bookmark));
+            log.append(WalRecord.removeBookmark("DevOps", "Github"));
+        }
+
+        List<WalRecord> replayed = new ArrayList<>();
+        try (WriteAheadLog log = new WriteAheadLog(TEST_LOG, FsyncPolicy.GROUPED)) {
+            assertEquals(3, log.replay(replayed::add));
+            assertEquals(3, log.getRecordsCount());
+        }
+        assertEquals(List.of(WalRecord.createGroup("DevOps"),
+                WalRecord.addBookmark("DevOps", bookmark),
+                WalRecord.removeBookmark("DevOps", "Github")), replayed);
+    }
+
+    @Test
+    void testReplayStopsAtTornLastRecord() throws IOException {
+        try (WriteAheadLog log = new WriteAheadLog(TEST_LOG, FsyncPolicy.PERIODIC)) {
+            log.append(WalRecord.createGroup("DevOps"));
+        }
+        Files.writeString(TEST_LOG, "{\"type\":\"ADD_BOOK", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+
+        List<WalRecord> replayed = new ArrayList<>();
+        try (WriteAheadLog log = new WriteAheadLog(TEST_LOG, FsyncPolicy.GROUPED)) {
+            log.replay(replayed::add);
+        }
+        assertEquals(List.of(WalRecord.createGroup("DevOps")), replayed);
+    }
+
+    @Test
+    void testRecordsAppendedAfterATornLineAreReplayed() throws IOException {
+        try (WriteAheadLog log = new WriteAheadLog(TEST_LOG, FsyncPolicy.PER_OPERATION)) {
+            log.append(WalRecord.createGroup("DevOps"));
+        }
+        Files.writeString(TEST_LOG, "{\"type\":\"ADD_BOOK", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+
+        try (WriteAheadLog log = new WriteAheadLog(TEST_LOG, FsyncPolicy.PER_OPERATION)) {
+            assertEquals(1, log.replay(record -> { }));
+            log.append(WalRecord.addBookmark("DevOps", bookmark));
+        }
+
+        List<WalRecord> replayed = new ArrayList<>();
+        try (WriteAheadLog log = new WriteAheadLog(TEST_LOG, FsyncPolicy.PER_OPERATION)) {
+            log.replay(replayed::add);
+        }
+        assertEquals(List.of(WalRecord.createGroup("DevOps"), WalRecord.addBookmark("DevOps", bookmark)),
+                replayed, "The torn line should have been cut off before the next append");
+    }
+
+    @Test
+    void testRecordsAfterAnUnreadableLineAreKept() throws IOException {
+        try (WriteAheadLog log = new WriteAheadLog(TEST_LOG, FsyncPolicy.PER_OPERATION)) {
+            log.append(WalRecord.createGroup("DevOps"));
+        }
+        Files.writeString(TEST_LOG, "{\"type\":\"UNKNOWN\"}\n\n", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+        try (WriteAheadLog log = new WriteAheadLog(TEST_LOG, FsyncPolicy.PER_OPERATION)) {
+            log.append(WalRecord.addBookmark("DevOps", bookmark));
+        }
+
+        List<WalRecord> replayed = new ArrayList<>();
+        try (WriteAheadLog log = new WriteAheadLog(TEST_LOG, FsyncPolicy.PER_OPERATION)) {
+            assertEquals(2, log.replay(replayed::add));
+        }
+        List<WalRecord> replayedAgain = new ArrayList<>();
+        try (WriteAheadLog log = new WriteAheadLog(TEST_LOG, FsyncPolicy.PER_OPERATION)) {
+            log.replay(replayedAgain::add);
+        }
+        assertEquals(List.of(WalRecord.createGroup("DevOps"), WalRecord.addBookmark("DevOps", bookmark)),
+                replayed, "The unreadable line should be skipped");
+        assertEquals(replayed, replayedAgain, "The records after the unreadable line should not be cut off");
+    }
+
+    @Test
+    void testTruncateEmptiesTheLog() throws IOException {
+        try (WriteAheadLog log = new WriteAheadLog(TEST_LOG, FsyncPolicy.GROUPED)) {
+            log.append(WalRecord.createGroup("DevOps"));
+            log.truncate();
+            assertEquals(0, log.getRecordsCount());
+            log.append(WalRecord.createGroup("Learn"));
+        }
+
+        List<WalRecord> replayed = new ArrayList<>();
+        try (WriteAheadLog log = new WriteAheadLog(TEST_LOG, FsyncPolicy.GROUPED)) {
+            log.replay(replayed::add);
+        }
+        assertEquals(List.of(WalRecord.createGroup("Learn")), replayed);
+    }
+}
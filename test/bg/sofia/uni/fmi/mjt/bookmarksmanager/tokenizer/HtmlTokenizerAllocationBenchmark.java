@@ -0,0 +1,96 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer.algorithm.RegularPluralFormAlgorithm;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer.algorithm.SuffixStrippingAlgorithm;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+//Compares the bytes allocated per page by the keywords extraction with the streaming
+//scanner and with the previous getText + regex + split pipeline (copied below), on a
+//generated page of about 1 MB. Run it with: java ... HtmlTokenizerAllocationBenchmark
+
+public class HtmlTokenizerAllocationBenchmark {
+    private static final int PARAGRAPHS = 4_000;
+    private static final int WORDS_PER_PARAGRAPH = 40;
+    private static final int ITERATIONS = 50;
+    private static final RegularPluralFormAlgorithm PLURAL = new RegularPluralFormAlgorithm();
+    private static final SuffixStrippingAlgorithm SUFFIX = new SuffixStrippingAlgorithm();
+    private static final String CSS_QUERY = "p, h1, h2, h3, h4, h5, h6, li, div";
+    private static final String[] WORDS = {"the", "java", "streams", "and", "collections", "of", "a",
+        "server", "client's", "bookmarks", "running", "tested", "quickly", "page", "(html)", "index,"};
+
+    public static void main(String[] args) throws IOException {
+        HtmlTokenizer tokenizer = HtmlTokenizer.getDefault();
+        Set<String> stopwords = new HashSet<>(Files.readAllLines(Path.of("src", "stopwords.txt")));
+        Document doc = Jsoup.parse(generatePage(new Random(42)));
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        for (int i = 0; i < ITERATIONS; i++) { //warm up
+            tokenizer.analyze(doc);
+            previousKeywords(stopwords, doc);
+        }
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            tokenizer.analyze(doc);
+        }
+        long scannerNanos = (System.nanoTime() - start) / ITERATIONS;
+        long scannerBytes = (threads.getCurrentThreadAllocatedBytes() - before) / ITERATIONS;
+
+        before = threads.getCurrentThreadAllocatedBytes();
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            previousKeywords(stopwords, doc);
+        }
+        long previousNanos = (System.nanoTime() - start) / ITERATIONS;
+        long previousBytes = (threads.getCurrentThreadAllocatedBytes() - before) / ITERATIONS;
+
+        System.out.printf("page of %d KB of text%n", doc.body().text().length() / 1024);
+        System.out.printf("streaming scanner: %,d bytes/page, %.1f ms/page%n", scannerBytes, scannerNanos / 1e6);
+        System.out.printf("previous pipeline: %,d bytes/page, %.1f ms/page%n", previousBytes, previousNanos / 1e6);
+    }
+
+    //what HtmlTokenizer.getKeywords did with a fetched page before the scanner
+    private static Set<String> previousKeywords(Set<String> stopwords, Document doc) {
+        StringBuilder textBuilder = new StringBuilder();
+        for (Element element : doc.select(CSS_QUERY)) {
+            textBuilder.append(element.text()).append(" ");
+        }
+        String refactoredInput = textBuilder.toString().trim().replaceAll("\\p{Punct}",
+                "").replaceAll("\\s+", " ").toLowerCase();
+        Map<String, Long> wordsOccurrences = Arrays.stream(refactoredInput.split(" "))
+                .filter(word -> !stopwords.contains(word))
+                .map(word -> SUFFIX.stem(PLURAL.stem(word)))
+                .collect(Collectors.groupingBy(word -> word, Collectors.counting()));
+        return wordsOccurrences.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(15).map(Map.Entry::getKey).collect(Collectors.toSet());
+    }
+
+    private static String generatePage(Random random) {
+        StringBuilder html = new StringBuilder("<html><head><title>Benchmark page</title></head><body>");
+        for (int i = 0; i < PARAGRAPHS; i++) {
+            html.append(i % 10 == 0 ? "<div><h2>" : "<p>");
+            for (int j = 0; j < WORDS_PER_PARAGRAPH; j++) {
+                String word = WORDS[random.nextInt(WORDS.length)];
+                html.append(j % 7 == 0 ? "<a href=\"#\">" + word + "</a>" : word).append(' ');
+            }
+            html.append(i % 10 == 0 ? "</h2></div>" : "</p>");
+        }
+        return html.append("</body></html>").toString();
+    }
+}
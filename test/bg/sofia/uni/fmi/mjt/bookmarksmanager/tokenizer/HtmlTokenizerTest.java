@@ -1,7 +1,16 @@
 package bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer;
+import com.sun.net.httpserver.HttpServer;
+import org.jsoup.Jsoup;
 import org.junit.jupiter.api.Test;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class HtmlTokenizerTest {
@@ -84,4 +93,73 @@ public class HtmlTokenizerTest {
 
         assertTrue(keywords.size() <= MAX_KEYWORDS_NUMBER);
     }
+
+    @Test
+    void testAnalyzeExtractsTitleKeywordsAndMetadataFromOneDocument() {
+        HtmlTokenizer tokenizer = newTokenizer();
+        String html = "<html><head><title>  Java   Course </title>" +
+                "<meta name=\"description\" content=\" Modern Java technologies \"></head>" +
+                "<body><h1>Streams</h1><p>The streams and the lambdas of Java</p></body></html>";
+
+        PageAnalysis page = tokenizer.analyze(Jsoup.parse(html, "https://example.com/java"));
+
+        assertEquals("Java-Course", page.title());
+        assertTrue(page.keywords().containsAll(Set.of("stream", "java")));
+        assertEquals("Modern Java technologies", page.description());
+        assertEquals("https://example.com/java", page.location());
+    }
+
+    @Test
+    void testForEachWordWalksTheTextNodesOfTheTextElementsOnce() {
+        HtmlTokenizer tokenizer = newTokenizer();
+        String html = "<html><body><div><p>The <b>Ja</b>va streams,</p><p>lambdas</p></div>" +
+                "<span>ignored</span><ul><li>Don't stop<br>Go</li></ul></body></html>";
+        List<String> words = new ArrayList<>();
+
+        tokenizer.forEachWord(Jsoup.parse(html), words::add);
+
+        assertEquals(List.of("java", "stream", "lambda", "dont", "stop", "go"), words,
+                "Inline elements should not split words, nested text elements should not repeat them");
+    }
+
+    @Test
+    void testCachedPagesAreRevalidatedInsteadOfDownloadedAgain() throws Exception {
+        AtomicInteger downloads = new AtomicInteger();
+        AtomicInteger notModified = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                byte[] body = "<html><head><title>Cached Page</title></head><body><p>Cats and dogs</p></body></html>"
+                        .getBytes(StandardCharsets.UTF_8);
+                downloads.incrementAndGet();
+                exchange.getResponseHeaders().add("Content-Type", "text/html");
+                exchange.getResponseHeaders().add("ETag", "\"v1\"");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+            exchange.close();
+        });
+        server.start();
+        String url = "http://localhost:" + server.getAddress().getPort() + "/page";
+        try {
+            HtmlTokenizer fresh = new HtmlTokenizer(Set.of("and"), new PageMetadataCache());
+            assertEquals("Cached-Page", fresh.analyze(url).title());
+            assertEquals(Set.of("cat", "dog"), fresh.analyze(url.replace("localhost", "LOCALHOST")).keywords());
+            assertEquals(1, downloads.get(), "A fresh page should not be fetched again");
+
+            HtmlTokenizer revalidating = new HtmlTokenizer(Set.of("and"),
+                    new PageMetadataCache(10, null, 10, Duration.ZERO, Clock.systemUTC()));
+            revalidating.analyze(url);
+            PageAnalysis page = revalidating.analyze(url);
+            assertEquals("Cached-Page", page.title());
+            assertEquals(2, downloads.get(), "A stale page should be downloaded only if it has changed");
+            assertEquals(1, notModified.get());
+            assertEquals(1, revalidating.getPageCache().getRevalidations());
+        } finally {
+            server.stop(0);
+        }
+    }
 }
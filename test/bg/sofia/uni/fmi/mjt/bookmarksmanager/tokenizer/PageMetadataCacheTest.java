@@ -0,0 +1,106 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.exceptions.logger.ExceptionsLogger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PageMetadataCacheTest {
+    private static final Path TEST_DIRECTORY = Path.of("test" + File.separator +
+            "bg" + File.separator + "sofia" + File.separator +
+            "uni" + File.separator + "fmi" + File.separator + "mjt" +
+            File.separator + "bookmarksmanager" + File.separator + "tokenizer"
+            + File.separator + "testPages");
+    private static final Duration FRESHNESS = Duration.ofHours(1);
+    private static final Clock CLOCK = Clock.fixed(Instant.ofEpochMilli(1_000_000), ZoneOffset.UTC);
+
+    @AfterEach
+    void cleanUp() throws IOException {
+        if (Files.exists(TEST_DIRECTORY)) {
+            try (Stream<Path> files = Files.walk(TEST_DIRECTORY)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+        ExceptionsLogger.cleanUpLogs();
+    }
+
+    @Test
+    void testSpellingsOfOnePageShareTheirEntry() {
+        PageMetadataCache cache = new PageMetadataCache(10, null, 10, FRESHNESS, CLOCK);
+        cache.put("HTTPS://Example.com/page#top", page("Title"), "\"v1\"", null);
+
+        PageMetadata cached = cache.get("https://example.com/page");
+        assertNotNull(cached);
+        assertEquals("Title", cached.toAnalysis().title());
+        assertEquals("\"v1\"", cached.etag());
+        assertTrue(cache.isFresh(cached));
+        assertNull(cache.get("https://example.com/other"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void testPagesOlderThanTheFreshnessAreStaleUntilRevalidated() {
+        PageMetadataCache cache = new PageMetadataCache(10, null, 10, FRESHNESS, CLOCK);
+        PageMetadata stale = new PageMetadata("https://example.com/", "Title", Set.of("word"), null,
+                "https://example.com/", CLOCK.millis() - FRESHNESS.toMillis(), null, "Mon, 01 Jan 2024 00:00:00 GMT");
+
+        assertFalse(cache.isFresh(stale));
+        assertTrue(cache.isFresh(cache.revalidated(stale)));
+        assertEquals(1, cache.getRevalidations());
+        assertEquals("Mon, 01 Jan 2024 00:00:00 GMT", cache.get("https://example.com").lastModified());
+    }
+
+    @Test
+    void testEvictedPagesAreReadBackFromTheDisk() {
+        PageMetadataCache cache = new PageMetadataCache(1, TEST_DIRECTORY, 10, FRESHNESS, CLOCK);
+        cache.put("https://a.com", page("A"), null, null);
+        cache.put("https://b.com", page("B"), null, null);
+
+        assertEquals(1, cache.size(), "Only one page should be kept in memory");
+        assertEquals(2, cache.getDiskEntries());
+        assertEquals("A", cache.get("https://a.com").title(), "The evicted page should still be on disk");
+
+        PageMetadataCache restarted = new PageMetadataCache(1, TEST_DIRECTORY, 10, FRESHNESS, CLOCK);
+        assertEquals(2, restarted.getDiskEntries());
+        assertEquals(List.of("bookmark", "page"), List.copyOf(restarted.get("https://b.com").keywords()),
+                "The keywords should keep their order");
+    }
+
+    @Test
+    void testTheDiskTierIsPrunedAboveItsLimit() {
+        PageMetadataCache cache = new PageMetadataCache(100, TEST_DIRECTORY, 10, FRESHNESS, CLOCK);
+        for (int i = 0; i <= 10; i++) {
+            cache.put("https://example.com/" + i, page("Page" + i), null, null);
+        }
+
+        assertEquals(9, cache.getDiskEntries(), "Pruning should make room for a tenth of the pages");
+        assertEquals(11, cache.size(), "Pruning the disk does not evict from memory");
+    }
+
+    private static PageAnalysis page(String title) {
+        return new PageAnalysis(title, new LinkedHashSet<>(List.of("bookmark", "page")), null,
+                "https://example.com");
+    }
+}
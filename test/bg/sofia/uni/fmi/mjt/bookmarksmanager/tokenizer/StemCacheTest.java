@@ -0,0 +1,78 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer;
+
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer.algorithm.RegularPluralFormAlgorithm;
+import bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer.algorithm.SuffixStrippingAlgorithm;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StemCacheTest {
+    private static final RegularPluralFormAlgorithm PLURAL = new RegularPluralFormAlgorithm();
+    private static final SuffixStrippingAlgorithm SUFFIX = new SuffixStrippingAlgorithm();
+
+    @Test
+    void testRepeatedWordsAreServedFromTheCache() {
+        StemCache cache = new StemCache(List.of(PLURAL, SUFFIX));
+
+        String first = cache.stem("playing");
+        StringBuilder token = new StringBuilder("xplayingx");
+        String second = cache.stem(token, 1, 8);
+
+        assertEquals(SUFFIX.stem(PLURAL.stem("playing")), first);
+        assertSame(first, second, "A hit should return the cached stem");
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void testTheCacheIsBoundedToItsCapacity() {
+        StemCache cache = new StemCache(List.of(PLURAL, SUFFIX), 4);
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals("word" + i, cache.stem("word" + i + "s"));
+        }
+        assertEquals(4, cache.getCapacity());
+        assertEquals(1_000, cache.getMisses());
+    }
+
+    @Test
+    void testConcurrentLookupsReturnTheStemsOfTheAlgorithms() throws Exception {
+        StemCache cache = new StemCache(List.of(PLURAL, SUFFIX), 64);
+        List<String> words = List.of("cats", "boxes", "running", "stopped", "quickly", "classes", "played");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = executor.invokeAll(List.of(() -> check(cache, words),
+                    () -> check(cache, words), () -> check(cache, words), () -> check(cache, words)));
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(4 * 1_000 * words.size(), cache.getHits() + cache.getMisses());
+    }
+
+    @Test
+    void testInvalidConstructionThrows() {
+        assertThrows(IllegalArgumentException.class, () -> new StemCache(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> new StemCache(List.of(PLURAL), 0));
+    }
+
+    private static boolean check(StemCache cache, List<String> words) {
+        for (int i = 0; i < 1_000; i++) {
+            for (String word : words) {
+                if (!SUFFIX.stem(PLURAL.stem(word)).equals(cache.stem(word))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,46 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StopwordsTrieTest {
+
+    private final StopwordsTrie trie = new StopwordsTrie(Set.of("a", "an", "and", "are", "the", "then", "to"));
+
+    @Test
+    void testContainsOnlyTheWholeStopwords() {
+        assertTrue(trie.contains("a"));
+        assertTrue(trie.contains("and"));
+        assertTrue(trie.contains("then"));
+        assertFalse(trie.contains("th"), "Prefixes of stopwords are not stopwords");
+        assertFalse(trie.contains("ands"));
+        assertFalse(trie.contains("java"));
+        assertFalse(trie.contains(""));
+        assertFalse(trie.contains(null));
+    }
+
+    @Test
+    void testContainsProbesARangeOfTheText() {
+        String text = "then java and";
+        assertTrue(trie.contains(text, 0, 4));
+        assertTrue(trie.contains(text, 0, 3));
+        assertFalse(trie.contains(text, 5, 9));
+        assertTrue(trie.contains(text, 10, 13));
+    }
+
+    @Test
+    void testDuplicatesAndNullsAreIgnored() {
+        StopwordsTrie withDuplicates = new StopwordsTrie(Arrays.asList("of", null, "of", "on"));
+        assertEquals(2, withDuplicates.size());
+        assertTrue(withDuplicates.contains("on"));
+        assertEquals(0, new StopwordsTrie(List.of()).size());
+        assertFalse(new StopwordsTrie(List.of()).contains("of"));
+    }
+}
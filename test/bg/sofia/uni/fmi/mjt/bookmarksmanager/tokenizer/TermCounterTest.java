@@ -0,0 +1,52 @@
+package bg.sofia.uni.fmi.mjt.bookmarksmanager.tokenizer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TermCounterTest {
+
+    @Test
+    void testCountsSurviveTheTableGrowing() {
+        TermCounter counter = new TermCounter();
+        for (int i = 0; i < 10_000; i++) {
+            counter.add("word" + i % 1_000);
+        }
+        counter.add(null);
+
+        assertEquals(1_000, counter.size());
+        assertEquals(10, counter.count("word999"));
+        assertEquals(0, counter.count("missing"));
+    }
+
+    @Test
+    void testTopReturnsTheMostFrequentFirst() {
+        TermCounter counter = new TermCounter();
+        List.of("java", "stream", "java", "lambda", "java", "stream").forEach(counter::add);
+
+        assertEquals(List.of("java", "stream", "lambda"), new ArrayList<>(counter.top(5)));
+        assertEquals(Set.of("java"), counter.top(1));
+        assertTrue(new TermCounter().top(15).isEmpty());
+    }
+
+    @Test
+    void testTiesAreBrokenAlphabeticallyRegardlessOfTheOrderOfTheWords() {
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            words.add("word" + i);
+        }
+        Collections.shuffle(words, new Random(7));
+        TermCounter counter = new TermCounter();
+        words.forEach(counter::add);
+        counter.add("word50");
+
+        assertEquals(List.of("word50", "word0", "word1", "word10", "word11"), new ArrayList<>(counter.top(5)));
+    }
+}
@@ -47,4 +47,14 @@ public class RegularPluralFormAlgorithmTest {
         assertEquals("analysis", algorithm.stem("analysis"));
         assertEquals("focus", algorithm.stem("focus"));
     }
+
+    @Test
+    void testStemOfACharRangeMatchesTheStemOfTheWord() {
+        String text = "cats boxes class is hi bus";
+        int start = 0;
+        for (String word : text.split(" ")) {
+            assertEquals(algorithm.stem(word), algorithm.stem(text, start, start + word.length()));
+            start += word.length() + 1;
+        }
+    }
 }